@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.impl.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// наполнение хранилищ для бенчмарков. Пользователи и фильмы получают id 1..users и 1..films,
+// лайки и дружбы распределяются детерминированно, чтобы прогоны были сравнимы между собой
+public final class BenchmarkData {
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger();
+    private static final int BATCH_SIZE = 10_000;
+    private static final int GENRES = 6;
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    private BenchmarkData(FilmStorage filmStorage, UserStorage userStorage, JdbcTemplate jdbcTemplate) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public static BenchmarkData create(String storage, int users, int films, int likes, int friendships) {
+        switch (storage) {
+            case "db":
+                return db("schema.sql", users, films, likes, friendships);
+            case "memory":
+                return memory(users, films, likes, friendships);
+            default:
+                throw new IllegalArgumentException("Неизвестное хранилище: " + storage);
+        }
+    }
+
+    // H2 в памяти со схемой из указанного скрипта на classpath; бенчмарки однопоточные, хватает одного соединения
+    public static BenchmarkData db(String schema, int users, int films, int likes, int friendships) {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:benchmark" + DATABASE_COUNTER.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", "", true);
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource(schema), new ClassPathResource("data.sql"));
+        populator.setSqlScriptEncoding("UTF-8");
+        DatabasePopulatorUtils.execute(populator, dataSource);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        seed(jdbcTemplate, users, films, likes, friendships);
+        return new BenchmarkData(new FilmDbStorage(jdbcTemplate), new UserDbStorage(jdbcTemplate), jdbcTemplate);
+    }
+
+    // наполнение пустой базы со схемой schema.sql и справочниками data.sql
+    public static void seed(JdbcTemplate jdbcTemplate, int users, int films, int likes, int friendships) {
+        batch(jdbcTemplate, "INSERT INTO users(email, login, name, birthday) VALUES (?, ?, ?, ?)", users,
+                (ps, i) -> {
+                    ps.setString(1, "user" + i + "@ya.ru");
+                    ps.setString(2, "login" + i);
+                    ps.setString(3, "name" + i);
+                    ps.setDate(4, Date.valueOf(LocalDate.of(1990, 1, 1)));
+                });
+        batch(jdbcTemplate, "INSERT INTO film(name, release_date, description, duration, rating_id, rate) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)", films,
+                (ps, i) -> {
+                    ps.setString(1, "film" + i);
+                    ps.setDate(2, Date.valueOf(LocalDate.of(2000, 1, 1)));
+                    ps.setString(3, "description" + i);
+                    ps.setInt(4, 100);
+                    ps.setInt(5, 1 + i % 5);
+                    ps.setInt(6, 0);
+                });
+        batch(jdbcTemplate, "INSERT INTO film_genre(film_id, genre_id) VALUES (?, ?)", films * 2,
+                (ps, i) -> {
+                    ps.setInt(1, 1 + i / 2);
+                    ps.setInt(2, 1 + (i / 2 + i % 2) % GENRES);
+                });
+        batch(jdbcTemplate, "INSERT INTO favorite_films(film_id, user_id) VALUES (?, ?)", likes,
+                (ps, i) -> {
+                    ps.setInt(1, likeFilmId(i, films));
+                    ps.setInt(2, likeUserId(i, films, users));
+                });
+        batch(jdbcTemplate, "INSERT INTO friendship(user_from, user_to, is_confirmed) VALUES (?, ?, ?)", friendships,
+                (ps, i) -> {
+                    ps.setInt(1, friendFromId(i, users));
+                    ps.setInt(2, friendToId(i, users));
+                    ps.setBoolean(3, i % 2 == 0);
+                });
+        jdbcTemplate.update("UPDATE film SET like_count = " +
+                "(SELECT COUNT(*) FROM favorite_films AS ff WHERE ff.film_id = film.id)");
+    }
+
+    public static BenchmarkData memory(int users, int films, int likes, int friendships) {
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        List<User> createdUsers = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            createdUsers.add(userStorage.create(User.builder()
+                    .email("user" + i + "@ya.ru")
+                    .login("login" + i)
+                    .name("name" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()));
+        }
+        List<Film> createdFilms = new ArrayList<>(films);
+        for (int i = 0; i < films; i++) {
+            Set<Genre> genres = new HashSet<>();
+            genres.add(Genre.builder().id(1 + i % GENRES).build());
+            genres.add(Genre.builder().id(1 + (i + 1) % GENRES).build());
+            createdFilms.add(filmStorage.create(Film.builder()
+                    .name("film" + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .description("description" + i)
+                    .duration(100)
+                    .mpa(Mpa.builder().id(1 + i % 5).build())
+                    .genres(genres)
+                    .build()));
+        }
+        for (int i = 0; i < likes; i++) {
+            filmStorage.likeFilm(createdFilms.get(likeFilmId(i, films) - 1),
+                    createdUsers.get(likeUserId(i, films, users) - 1));
+        }
+        for (int i = 0; i < friendships; i++) {
+            userStorage.addFriend(friendFromId(i, users), friendToId(i, users));
+        }
+        return new BenchmarkData(filmStorage, userStorage, null);
+    }
+
+    public FilmStorage getFilmStorage() {
+        return filmStorage;
+    }
+
+    public UserStorage getUserStorage() {
+        return userStorage;
+    }
+
+    // null для хранилищ в памяти
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    // пользователь без лайков и друзей, чтобы лайк/дизлайк в бенчмарках не менял набор данных
+    public User createSpareUser() {
+        return userStorage.create(User.builder()
+                .email("spare" + DATABASE_COUNTER.incrementAndGet() + "@ya.ru")
+                .login("spare" + DATABASE_COUNTER.get())
+                .name("spare")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+    }
+
+    // i-й лайк: фильмы перебираются по кругу, для каждого фильма пользователи идут подряд,
+    // поэтому пары не повторяются, пока likes <= films * users
+    private static int likeFilmId(int i, int films) {
+        return 1 + i % films;
+    }
+
+    private static int likeUserId(int i, int films, int users) {
+        return 1 + (i / films + i % films) % users;
+    }
+
+    // i-я дружба: user_to всегда отличается от user_from и не повторяется, пока friendships < users * (users - 1)
+    private static int friendFromId(int i, int users) {
+        return 1 + i % users;
+    }
+
+    private static int friendToId(int i, int users) {
+        return 1 + (i % users + 1 + i / users % (users - 1)) % users;
+    }
+
+    private static void batch(JdbcTemplate jdbcTemplate, String sql, int count,
+                              ParameterizedPreparedStatementSetter<Integer> setter) {
+        for (int from = 0; from < count; from += BATCH_SIZE) {
+            List<Integer> indexes = IntStream.range(from, Math.min(from + BATCH_SIZE, count))
+                    .boxed()
+                    .collect(Collectors.toList());
+            jdbcTemplate.batchUpdate(sql, indexes, BATCH_SIZE, setter);
+        }
+    }
+}
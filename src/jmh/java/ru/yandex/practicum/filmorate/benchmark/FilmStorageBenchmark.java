@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilmStorageBenchmark {
+    @Param({"db", "memory"})
+    private String storage;
+    @Param({"1000"})
+    private int users;
+    @Param({"10000"})
+    private int films;
+    @Param({"100000"})
+    private int likes;
+
+    private FilmStorage filmStorage;
+    private FilmService filmService;
+    private User spareUser;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData data = BenchmarkData.create(storage, users, films, likes, 0);
+        filmStorage = data.getFilmStorage();
+        filmService = new FilmService(filmStorage, data.getUserStorage());
+        filmService.rebuildLeaderboard();
+        spareUser = data.createSpareUser();
+    }
+
+    @Benchmark
+    public Film getById() {
+        return filmStorage.get(randomFilmId());
+    }
+
+    @Benchmark
+    public List<Film> findAll() {
+        return filmStorage.findAll();
+    }
+
+    @Benchmark
+    public List<Film> popular() {
+        return filmService.getPopularFilms(10);
+    }
+
+    // лайк и дизлайк одной парой, чтобы количество лайков не росло от итерации к итерации
+    @Benchmark
+    public void likeAndDislike() {
+        int filmId = randomFilmId();
+        filmService.likeFilm(filmId, spareUser.getId());
+        filmService.dislikeFilm(filmId, spareUser.getId());
+    }
+
+    private int randomFilmId() {
+        return 1 + ThreadLocalRandom.current().nextInt(films);
+    }
+}
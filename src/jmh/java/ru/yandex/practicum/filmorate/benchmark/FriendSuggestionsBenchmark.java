@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.roaringbitmap.RoaringBitmap;
+import ru.yandex.practicum.filmorate.storage.FriendIndex;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// рекомендации друзей на графе со степенным распределением степеней (модель Барабаши - Альберт):
+// большинство пользователей с парой десятков друзей и немного "звезд" с десятками тысяч.
+// Цель: p0.99 в результатах SampleTime не больше 50 мс для случайного пользователя
+// и не больше 200 мс для самого популярного
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FriendSuggestionsBenchmark {
+    @Param({"100000"})
+    private int users;
+    // новых связей у каждого добавляемого пользователя, средняя степень - вдвое больше
+    @Param({"10"})
+    private int edgesPerUser;
+    @Param({"10"})
+    private int limit;
+
+    private final FriendIndex index = new FriendIndex();
+    private int hubId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        Map<Integer, RoaringBitmap> friends = new HashMap<>();
+        // концы всех ребер: выбор случайного элемента - выбор пользователя с вероятностью, пропорциональной степени
+        int[] endpoints = new int[2 * users * edgesPerUser];
+        int endpointCount = 0;
+        for (int user = 1; user <= users; user++) {
+            RoaringBitmap own = friends.computeIfAbsent(user, id -> new RoaringBitmap());
+            int links = Math.min(edgesPerUser, user - 1);
+            for (int i = 0; i < links; i++) {
+                int friend = endpointCount == 0 ? 1 : endpoints[random.nextInt(endpointCount)];
+                if (friend == user || !own.checkedAdd(friend)) {
+                    continue;
+                }
+                friends.get(friend).add(user);
+                endpoints[endpointCount++] = user;
+                endpoints[endpointCount++] = friend;
+            }
+        }
+        index.rebuild(friends);
+
+        hubId = 1;
+        for (Map.Entry<Integer, RoaringBitmap> entry : friends.entrySet()) {
+            if (entry.getValue().getCardinality() > friends.get(hubId).getCardinality()) {
+                hubId = entry.getKey();
+            }
+        }
+    }
+
+    @Benchmark
+    public int[] randomUser() {
+        return index.suggestions(1 + ThreadLocalRandom.current().nextInt(users), limit);
+    }
+
+    @Benchmark
+    public int[] mostPopularUser() {
+        return index.suggestions(hubId, limit);
+    }
+}
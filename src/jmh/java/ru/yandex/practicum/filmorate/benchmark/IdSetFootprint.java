@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jol.info.GraphLayout;
+import ru.yandex.practicum.filmorate.model.IntSet;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+// сравнение занимаемой памяти множеств id лайков/друзей: HashSet<Integer> против IntSet.
+// Размеры - типичный пользователь, активный пользователь, популярный фильм и хит
+public class IdSetFootprint {
+    private static final int[] CARDINALITIES = {20, 1_000, 50_000, 200_000};
+    private static final int MAX_ID = 1_000_000;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        System.out.printf("%12s %16s %16s %8s%n", "elements", "HashSet, bytes", "IntSet, bytes", "ratio");
+        for (int cardinality : CARDINALITIES) {
+            Set<Integer> hashSet = new HashSet<>();
+            IntSet intSet = new IntSet();
+            while (hashSet.size() < cardinality) {
+                // id больше 127, чтобы не попадать в кеш Integer.valueOf
+                int id = 128 + random.nextInt(MAX_ID);
+                hashSet.add(id);
+                intSet.add(id);
+            }
+            long hashSetBytes = GraphLayout.parseInstance(hashSet).totalSize();
+            long intSetBytes = GraphLayout.parseInstance(intSet).totalSize();
+            System.out.printf("%12d %16d %16d %8.1f%n", cardinality, hashSetBytes, intSetBytes,
+                    (double) hashSetBytes / intSetBytes);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.filmorate.config.JsonConfiguration;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// сериализация ответа GET /films и GET /users: Jackson по умолчанию (reflective) против ручных сериализаторов
+// из JsonConfiguration (fast), без сжатия и с gzip, как при server.compression. Поток - переиспользуемый
+// буфер в памяти, так что в замер не входит сеть
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+    @Param({"reflective", "fast"})
+    private String serializer;
+    @Param({"10000"})
+    private int users;
+    @Param({"10000"})
+    private int films;
+    @Param({"500000"})
+    private int likes;
+    @Param({"100000"})
+    private int friendships;
+
+    private ObjectMapper objectMapper;
+    private List<Film> filmList;
+    private List<User> userList;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024 * 1024);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if ("fast".equals(serializer)) {
+            builder.modulesToInstall(new JsonConfiguration().filmorateJsonModule());
+        }
+        objectMapper = builder.build();
+        BenchmarkData data = BenchmarkData.memory(users, films, likes, friendships);
+        filmList = data.getFilmStorage().findAll();
+        userList = data.getUserStorage().findAll();
+    }
+
+    @Benchmark
+    public int films() throws IOException {
+        out.reset();
+        objectMapper.writeValue(out, filmList);
+        return out.size();
+    }
+
+    @Benchmark
+    public int filmsGzip() throws IOException {
+        out.reset();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            objectMapper.writeValue(gzip, filmList);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public int users() throws IOException {
+        out.reset();
+        objectMapper.writeValue(out, userList);
+        return out.size();
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// запросы к таблицам связей до и после добавления первичных ключей и обратных индексов
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinkTableIndexBenchmark {
+    @Param({"schema.sql", "schema-unindexed.sql"})
+    private String schema;
+    @Param({"10000"})
+    private int users;
+    @Param({"10000"})
+    private int films;
+    @Param({"1000000"})
+    private int likes;
+    @Param({"200000"})
+    private int friendships;
+
+    private FilmStorage filmStorage;
+    private UserStorage userStorage;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData data = BenchmarkData.db(schema, users, films, likes, friendships);
+        filmStorage = data.getFilmStorage();
+        userStorage = data.getUserStorage();
+        jdbcTemplate = data.getJdbcTemplate();
+    }
+
+    @Benchmark
+    public Film filmWithLikes() {
+        return filmStorage.get(1 + ThreadLocalRandom.current().nextInt(films));
+    }
+
+    // выборка по user_id использует обратный индекс favorite_films_user_idx
+    @Benchmark
+    public List<Integer> filmsLikedByUser() {
+        return jdbcTemplate.queryForList("SELECT film_id FROM favorite_films WHERE user_id = ?",
+                Integer.class, randomUserId());
+    }
+
+    @Benchmark
+    public List<User> friendList() {
+        return userStorage.getUserFriends(randomUserId());
+    }
+
+    @Benchmark
+    public List<User> commonFriends() {
+        return userStorage.getCommonFriends(randomUserId(), randomUserId());
+    }
+
+    private int randomUserId() {
+        return 1 + ThreadLocalRandom.current().nextInt(users);
+    }
+}
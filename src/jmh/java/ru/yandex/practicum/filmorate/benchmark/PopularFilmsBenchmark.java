@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// сравнение способов получить топ фильмов: рейтинг в памяти, ORDER BY like_count в базе
+// и прежний вариант с сортировкой всех фильмов
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PopularFilmsBenchmark {
+    @Param({"1000"})
+    private int users;
+    @Param({"1000", "50000"})
+    private int films;
+    @Param({"200000"})
+    private int likes;
+    @Param({"10"})
+    private int count;
+
+    private FilmStorage filmStorage;
+    private FilmService filmService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData data = BenchmarkData.db("schema.sql", users, films, likes, 0);
+        filmStorage = data.getFilmStorage();
+        filmService = new FilmService(filmStorage, data.getUserStorage());
+        filmService.rebuildLeaderboard();
+    }
+
+    @Benchmark
+    public List<Film> leaderboard() {
+        return filmService.getPopularFilms(count);
+    }
+
+    @Benchmark
+    public List<Film> sqlOrderByLikeCount() {
+        return filmStorage.getPopularFilms(count);
+    }
+
+    @Benchmark
+    public List<Film> sortAllFilms() {
+        return filmStorage.findAll().stream()
+                .sorted(Comparator.comparingInt((Film film) -> film.getLikes().size()).reversed())
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+}
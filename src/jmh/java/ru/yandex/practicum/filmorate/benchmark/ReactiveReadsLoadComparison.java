@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.concurrent.ThreadLocalRandom;
+
+// одинаковая смесь чтений через сервлетные эндпоинты (JDBC) и через /reactive/... (R2DBC) на одном приложении
+// и одной базе, пулы соединений одного размера. Популярные в сервлетном варианте берутся из рейтинга в памяти,
+// в реактивном - запросом по like_count, поэтому они в смесь не входят.
+// Аргументы: clients, seconds, размер пулов соединений
+public class ReactiveReadsLoadComparison {
+    private static final int WARMUP_SECONDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int poolSize = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        ConfigurableApplicationContext context = RequestThreadsLoadComparison.startSeeded("reads", poolSize);
+        try {
+            String baseUrl = RequestThreadsLoadComparison.baseUrl(context);
+            String servlet = run(baseUrl, "", clients, seconds).format("servlet", clients, seconds);
+            String reactive = run(baseUrl, "/reactive", clients, seconds).format("reactive", clients, seconds);
+            RequestThreadsLoadComparison.printHeader("api");
+            System.out.println(servlet);
+            System.out.println(reactive);
+        } finally {
+            context.close();
+        }
+    }
+
+    private static RequestThreadsLoadComparison.Result run(String baseUrl, String prefix, int clients, int seconds)
+            throws Exception {
+        RequestThreadsLoadComparison.load(baseUrl + prefix, clients, WARMUP_SECONDS,
+                ReactiveReadsLoadComparison::nextRequest);
+        return RequestThreadsLoadComparison.load(baseUrl + prefix, clients, seconds,
+                ReactiveReadsLoadComparison::nextRequest);
+    }
+
+    // 50% фильм по id, 30% друзья пользователя, 20% общие друзья
+    private static HttpRequest nextRequest(String baseUrl) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int roll = random.nextInt(10);
+        String path;
+        if (roll < 5) {
+            path = "/films/" + (1 + random.nextInt(RequestThreadsLoadComparison.FILMS));
+        } else if (roll < 8) {
+            path = "/users/" + (1 + random.nextInt(RequestThreadsLoadComparison.USERS)) + "/friends";
+        } else {
+            path = "/users/" + (1 + random.nextInt(RequestThreadsLoadComparison.USERS)) + "/friends/common/"
+                    + (1 + random.nextInt(RequestThreadsLoadComparison.USERS));
+        }
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.service.LikeMatrix;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// рекомендации фильмов по матрице лайков: users пользователей, films фильмов, у каждого пользователя
+// likesPerUser лайков. Популярность фильмов неравномерная (вероятность id ~ id^(-2/3)): несколько фильмов
+// с сотнями тысяч лайков и длинный хвост. heaviestUser - пользователь с наибольшим числом пересечений
+// для подсчета, то есть самый дорогой запрос. Результаты SampleTime в миллисекундах
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class RecommendationsBenchmark {
+    // у LikeMatrix.MAX_FILM_AUDIENCE то же значение: такие фильмы в поиске соседей не участвуют
+    private static final int MAX_FILM_AUDIENCE = 50_000;
+
+    @Param({"1000000"})
+    private int users;
+    @Param({"100000"})
+    private int films;
+    @Param({"10"})
+    private int likesPerUser;
+    @Param({"10"})
+    private int limit;
+
+    private final LikeMatrix matrix = new LikeMatrix();
+    private int heaviestUserId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int[] likedFilms = new int[users * likesPerUser];
+        int[] audience = new int[films + 1];
+        for (int i = 0; i < likedFilms.length; i++) {
+            int filmId = 1 + (int) (films * Math.pow(random.nextDouble(), 3));
+            likedFilms[i] = filmId;
+            audience[filmId]++;
+        }
+        matrix.rebuild(consumer -> {
+            for (int i = 0; i < likedFilms.length; i++) {
+                consumer.accept(likedFilms[i], 1 + i / likesPerUser);
+            }
+        });
+
+        long heaviest = -1;
+        for (int user = 0; user < users; user++) {
+            long postings = 0;
+            for (int i = user * likesPerUser; i < (user + 1) * likesPerUser; i++) {
+                if (audience[likedFilms[i]] <= MAX_FILM_AUDIENCE) {
+                    postings += audience[likedFilms[i]];
+                }
+            }
+            if (postings > heaviest) {
+                heaviest = postings;
+                heaviestUserId = user + 1;
+            }
+        }
+    }
+
+    @Benchmark
+    public int[] randomUser() {
+        return matrix.recommend(1 + ThreadLocalRandom.current().nextInt(users), limit);
+    }
+
+    @Benchmark
+    public int[] heaviestUser() {
+        return matrix.recommend(heaviestUserId, limit);
+    }
+}
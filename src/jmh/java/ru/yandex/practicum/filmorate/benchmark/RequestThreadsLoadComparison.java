@@ -0,0 +1,192 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// сравнение пропускной способности и p99 под всплеском нагрузки: приложение поднимается дважды - на пуле
+// потоков Tomcat и на виртуальных потоках (нужна Java 21), - и clients клиентов шлют вперемешку популярные
+// фильмы, списки друзей и лайки. Пул соединений с БД одинаковый, так что разница - только в потоках запросов.
+// Аргументы: clients, seconds, размер пула соединений. С -Djdk.tracePinnedThreads=short печатает стеки,
+// на которых виртуальный поток закрепился за носителем (у встроенной H2 - synchronized на сессии)
+public class RequestThreadsLoadComparison {
+    static final int USERS = 10_000;
+    static final int FILMS = 2_000;
+    private static final int LIKES = 100_000;
+    private static final int FRIENDSHIPS = 50_000;
+    private static final int WARMUP_SECONDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int poolSize = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        List<String> rows = new ArrayList<>();
+        rows.add(run(false, clients, seconds, poolSize));
+        if (Runtime.version().feature() >= 21) {
+            rows.add(run(true, clients, seconds, poolSize));
+        } else {
+            System.out.println("JVM " + Runtime.version() + " без виртуальных потоков, сравнение только с пулом Tomcat");
+        }
+        printHeader("threads");
+        rows.forEach(System.out::println);
+    }
+
+    private static String run(boolean virtual, int clients, int seconds, int poolSize) throws Exception {
+        ConfigurableApplicationContext context = startSeeded("load-" + virtual, poolSize,
+                "filmorate.threads.virtual=" + virtual);
+        try {
+            String baseUrl = baseUrl(context);
+            load(baseUrl, clients, WARMUP_SECONDS, RequestThreadsLoadComparison::nextRequest);
+            return load(baseUrl, clients, seconds, RequestThreadsLoadComparison::nextRequest)
+                    .format(virtual ? "virtual" : "platform", clients, seconds);
+        } finally {
+            context.close();
+        }
+    }
+
+    // приложение на случайном порту с заполненной базой в памяти и построенными индексами;
+    // R2DBC смотрит в ту же базу
+    static ConfigurableApplicationContext startSeeded(String database, int poolSize, String... properties) {
+        List<String> all = new ArrayList<>(List.of("server.port=0",
+                "spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                "filmorate.reactive.url=r2dbc:h2:mem:///" + database + "?options=DB_CLOSE_DELAY=-1",
+                "spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "filmorate.reactive.pool-size=" + poolSize,
+                "spring.h2.console.enabled=false",
+                "logging.level.root=WARN"));
+        all.addAll(Arrays.asList(properties));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .properties(all.toArray(new String[0]))
+                .run();
+        BenchmarkData.seed(context.getBean(JdbcTemplate.class), USERS, FILMS, LIKES, FRIENDSHIPS);
+        context.getBean(FilmService.class).rebuildLeaderboard();
+        context.getBean(FilmService.class).rebuildLikeMatrix();
+        context.getBean(UserDbStorage.class).rebuildFriendIndex();
+        return context;
+    }
+
+    static String baseUrl(ConfigurableApplicationContext context) {
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    static void printHeader(String mode) {
+        System.out.printf("%n%-10s %8s %12s %10s %10s %8s%n", mode, "clients", "requests/s", "p50, ms", "p99, ms",
+                "errors");
+    }
+
+    // clients клиентов шлют запросы из requests, пока не выйдет время; задержки собираются по всем клиентам
+    static Result load(String baseUrl, int clients, int seconds, Function<String, HttpRequest> requests)
+            throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicLong errors = new AtomicLong();
+        List<Future<long[]>> futures = new ArrayList<>(clients);
+        for (int c = 0; c < clients; c++) {
+            futures.add(executor.submit(() -> {
+                long[] recorded = new long[1024];
+                int count = 0;
+                start.await();
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = requests.apply(baseUrl);
+                    long begin = System.nanoTime();
+                    try {
+                        if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() >= 300) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    }
+                    if (count == recorded.length) {
+                        recorded = Arrays.copyOf(recorded, count * 2);
+                    }
+                    recorded[count++] = System.nanoTime() - begin;
+                }
+                return Arrays.copyOf(recorded, count);
+            }));
+        }
+        start.countDown();
+        List<long[]> latencies = new ArrayList<>(clients);
+        for (Future<long[]> future : futures) {
+            latencies.add(future.get());
+        }
+        executor.shutdown();
+
+        long[] all = new long[latencies.stream().mapToInt(l -> l.length).sum()];
+        int offset = 0;
+        for (long[] own : latencies) {
+            System.arraycopy(own, 0, all, offset, own.length);
+            offset += own.length;
+        }
+        Arrays.sort(all);
+        return new Result(all, errors.get());
+    }
+
+    // 70% популярные фильмы, 20% друзья пользователя, 10% лайки
+    private static HttpRequest nextRequest(String baseUrl) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int roll = random.nextInt(10);
+        if (roll < 7) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/films/popular?count=10")).GET().build();
+        }
+        int userId = 1 + random.nextInt(USERS);
+        if (roll < 9) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/users/" + userId + "/friends")).GET().build();
+        }
+        int filmId = 1 + random.nextInt(FILMS);
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/films/" + filmId + "/like/" + userId))
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    static final class Result {
+        private final long[] sortedLatencies;
+        private final long requests;
+        private final long errors;
+
+        private Result(long[] sortedLatencies, long errors) {
+            this.sortedLatencies = sortedLatencies;
+            this.requests = sortedLatencies.length;
+            this.errors = errors;
+        }
+
+        String format(String mode, int clients, int seconds) {
+            return String.format("%-10s %8d %12.0f %10.1f %10.1f %8d", mode, clients, requests / (double) seconds,
+                    percentileMs(0.50), percentileMs(0.99), errors);
+        }
+
+        private double percentileMs(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(percentile * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import ru.yandex.practicum.filmorate.metrics.StorageMetricsAspect;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// цена метрик хранилища: те же вызовы FilmStorage без метрик и через StorageMetricsAspect с процентилями,
+// как в application.properties. В хранилище в памяти вызов самый короткий, и доля метрик в нем наибольшая
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StorageMetricsBenchmark {
+    @Param({"db", "memory"})
+    private String storage;
+    @Param({"off", "on"})
+    private String metrics;
+    @Param({"1000"})
+    private int users;
+    @Param({"10000"})
+    private int films;
+    @Param({"100000"})
+    private int likes;
+
+    private FilmStorage filmStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FilmStorage target = BenchmarkData.create(storage, users, films, likes, 0).getFilmStorage();
+        if ("off".equals(metrics)) {
+            filmStorage = target;
+            return;
+        }
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder()
+                        .percentiles(0.5, 0.95, 0.99)
+                        .build()
+                        .merge(config);
+            }
+        });
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.addAspect(new StorageMetricsAspect(registry));
+        filmStorage = factory.getProxy();
+    }
+
+    @Benchmark
+    public Film getById() {
+        return filmStorage.get(randomFilmId());
+    }
+
+    @Benchmark
+    public List<Film> getByIds() {
+        return filmStorage.getByIds(List.of(randomFilmId(), randomFilmId(), randomFilmId()));
+    }
+
+    private int randomFilmId() {
+        return 1 + ThreadLocalRandom.current().nextInt(films);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserStorageBenchmark {
+    @Param({"db", "memory"})
+    private String storage;
+    @Param({"10000"})
+    private int users;
+    @Param({"200000"})
+    private int friendships;
+
+    private UserStorage userStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userStorage = BenchmarkData.create(storage, users, 1, 0, friendships).getUserStorage();
+        if (userStorage instanceof UserDbStorage) {
+            ((UserDbStorage) userStorage).rebuildFriendIndex();
+        }
+    }
+
+    @Benchmark
+    public User getById() {
+        return userStorage.get(randomUserId());
+    }
+
+    @Benchmark
+    public List<User> findAll() {
+        return userStorage.findAll();
+    }
+
+    @Benchmark
+    public List<User> friendList() {
+        return userStorage.getUserFriends(randomUserId());
+    }
+
+    @Benchmark
+    public List<User> commonFriends() {
+        return userStorage.getCommonFriends(randomUserId(), randomUserId());
+    }
+
+    private int randomUserId() {
+        return 1 + ThreadLocalRandom.current().nextInt(users);
+    }
+}
@@ -2,8 +2,13 @@ package ru.yandex.practicum.filmorate;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// пул R2DBC создает ReactiveDbConfiguration и не публикует его бином: бин ConnectionFactory перевел бы
+// инициализацию схемы и менеджер транзакций с JDBC на R2DBC
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@EnableScheduling
 public class FilmorateApplication {
 
 	public static void main(String[] args) {
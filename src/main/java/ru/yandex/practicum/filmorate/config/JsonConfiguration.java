@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.json.FilmSerializer;
+import ru.yandex.practicum.filmorate.json.UserSerializer;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+// ручные сериализаторы фильмов и пользователей. Spring Boot добавляет модуль в общий ObjectMapper,
+// поэтому их используют ответы контроллеров, выгрузка NDJSON и реактивные эндпоинты. Буферы генератора
+// Jackson и так берет из своего пула (BufferRecycler), отдельный пул не нужен
+@Configuration
+public class JsonConfiguration {
+    @Bean
+    public Module filmorateJsonModule() {
+        return new SimpleModule("filmorate")
+                .addSerializer(Film.class, new FilmSerializer())
+                .addSerializer(User.class, new UserSerializer());
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.config;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.logging.NotFoundLogLimiter;
+import ru.yandex.practicum.filmorate.logging.RequestLogSampler;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+
+// турбофильтры Logback для логов запросов: выборка по @SampledLog и ограничение промахов по id.
+// Запись в консоль идет через AsyncAppender из logback-spring.xml
+@Configuration
+public class LoggingConfiguration {
+    private static final String CONTROLLER_LOGGERS = "ru.yandex.practicum.filmorate.controller.";
+
+    private final List<TurboFilter> filters;
+
+    public LoggingConfiguration(LoggingProperties properties) {
+        filters = List.of(new RequestLogSampler(CONTROLLER_LOGGERS, properties.getRequestSampleRate()),
+                new NotFoundLogLimiter(properties.getNotFoundPerSecond()));
+    }
+
+    // контекст Logback общий для всех приложений в JVM (например, контекстов в тестах),
+    // поэтому фильтры прежнего приложения того же типа заменяются
+    @PostConstruct
+    public void install() {
+        LoggerContext context = loggerContext();
+        if (context == null) {
+            return;
+        }
+        for (TurboFilter filter : filters) {
+            context.getTurboFilterList().removeIf(existing -> existing.getClass() == filter.getClass());
+            filter.setContext(context);
+            filter.start();
+            context.addTurboFilter(filter);
+        }
+    }
+
+    @PreDestroy
+    public void uninstall() {
+        LoggerContext context = loggerContext();
+        if (context != null) {
+            context.getTurboFilterList().removeAll(filters);
+        }
+        filters.forEach(TurboFilter::stop);
+    }
+
+    private static LoggerContext loggerContext() {
+        return LoggerFactory.getILoggerFactory() instanceof LoggerContext
+                ? (LoggerContext) LoggerFactory.getILoggerFactory()
+                : null;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// выборка и ограничение логов (filmorate.logging.*)
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.logging")
+public class LoggingProperties {
+    // каждый какой запрос логируют обработчики без @SampledLog; 1 - все
+    private int requestSampleRate = 1;
+    // сообщений о ненайденных по id сущностях в секунду, остальные только считаются
+    private int notFoundPerSecond = 20;
+}
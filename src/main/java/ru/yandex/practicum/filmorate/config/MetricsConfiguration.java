@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.metrics.StatementCountingDataSource;
+
+import javax.sql.DataSource;
+
+// метрики приложения для /actuator/prometheus: время методов хранилищ (StorageMetricsAspect),
+// число JDBC-выражений на запрос (JdbcStatementsFilter); время HTTP-запросов и ожидания соединения из пула
+// снимают сами Spring Boot и Hikari (http.server.requests, hikaricp.connections.acquire)
+@Configuration
+public class MetricsConfiguration {
+    // static - постпроцессор должен создаваться раньше остальных бинов
+    @Bean
+    public static BeanPostProcessor statementCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof StatementCountingDataSource)) {
+                    return new StatementCountingDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+}
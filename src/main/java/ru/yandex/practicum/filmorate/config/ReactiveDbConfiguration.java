@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import javax.annotation.PreDestroy;
+
+// R2DBC для реактивного чтения каталогов. Схему создает и меняет только JDBC, здесь - одни SELECT,
+// поэтому реактивный менеджер транзакций не нужен
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+public class ReactiveDbConfiguration {
+    private final ConnectionPool pool;
+
+    public ReactiveDbConfiguration(ReactiveDbProperties properties) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(properties.getUrl()).mutate()
+                .option(ConnectionFactoryOptions.USER, properties.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, properties.getPassword())
+                .build();
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(0)
+                .maxSize(properties.getPoolSize())
+                .build());
+        log.info("Реактивное чтение подключено к {}, пул {}", properties.getUrl(), properties.getPoolSize());
+    }
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient() {
+        return DatabaseClient.create(pool);
+    }
+
+    @PreDestroy
+    public void closePool() {
+        pool.dispose();
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// подключение реактивного чтения к той же базе, что и JDBC (filmorate.reactive.*)
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.reactive")
+public class ReactiveDbProperties {
+    // r2dbc:h2:file:///./db/filmorate - тот же файл, что jdbc:h2:file:./db/filmorate
+    private String url = "r2dbc:h2:file:///./db/filmorate";
+    private String username = "sa";
+    private String password = "";
+    private int poolSize = 10;
+}
@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// обработка запросов на виртуальных потоках (filmorate.threads.virtual=true): поток, ждущий JDBC,
+// не занимает поток ОС, и число одновременных запросов ограничивает пул соединений, а не 200 потоков Tomcat.
+// Проект собирается под Java 11, поэтому фабрика виртуальных потоков ищется через рефлексию.
+// Если JVM их не поддерживает, остается обычный ограниченный пул Tomcat (server.tomcat.threads.max)
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.threads.virtual", havingValue = "true")
+public class VirtualThreadsConfiguration implements WebMvcConfigurer {
+    private final ExecutorService executor = newVirtualThreadExecutor().orElse(null);
+
+    public VirtualThreadsConfiguration() {
+        if (executor == null) {
+            log.warn("JVM {} не поддерживает виртуальные потоки, запросы обрабатывает пул потоков Tomcat",
+                    Runtime.version());
+        } else {
+            log.info("Запросы обрабатываются на виртуальных потоках");
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (executor != null) {
+                protocolHandler.setExecutor(executor);
+            }
+        };
+    }
+
+    // потоковая выгрузка (StreamingResponseBody) тоже пишет ответ на виртуальном потоке
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        if (executor != null) {
+            configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() из Java 21; в Java 19-20 без --enable-preview он бросает
+    // UnsupportedOperationException, это тоже означает отсутствие поддержки
+    static Optional<ExecutorService> newVirtualThreadExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null));
+        } catch (NoSuchMethodException | InvocationTargetException e) {
+            return Optional.empty();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.metrics.QueryBudget;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
+import ru.yandex.practicum.filmorate.service.BulkImportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// массовая загрузка: тело запроса в NDJSON (одна сущность JSON на строку) или CSV с заголовком,
+// формат определяется по Content-Type. Ответ - отчет с ошибками по номерам строк.
+// Запросы к БД повторяются на каждую пачку строк, поэтому бюджета запросов у этих эндпоинтов нет
+@RestController
+@Slf4j
+public class BulkImportController {
+    public static final String TEXT_CSV_VALUE = "text/csv";
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType(TEXT_CSV_VALUE);
+
+    private final BulkImportService bulkImportService;
+
+    @Autowired
+    public BulkImportController(BulkImportService bulkImportService) {
+        this.bulkImportService = bulkImportService;
+    }
+
+    @PostMapping(value = "/films/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    @QueryBudget(QueryBudget.UNLIMITED)
+    public BulkImportResult importFilms(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                        InputStream body) throws IOException {
+        log.info("Получен запрос POST /films/bulk, Content-Type = {}", contentType);
+        return bulkImportService.importFilms(body, format(contentType));
+    }
+
+    @PostMapping(value = "/users/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    @QueryBudget(QueryBudget.UNLIMITED)
+    public BulkImportResult importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                        InputStream body) throws IOException {
+        log.info("Получен запрос POST /users/bulk, Content-Type = {}", contentType);
+        return bulkImportService.importUsers(body, format(contentType));
+    }
+
+    @PostMapping(value = "/films/likes/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    @QueryBudget(QueryBudget.UNLIMITED)
+    public BulkImportResult importLikes(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                        InputStream body) throws IOException {
+        log.info("Получен запрос POST /films/likes/bulk, Content-Type = {}", contentType);
+        return bulkImportService.importLikes(body, format(contentType));
+    }
+
+    @PostMapping(value = "/users/friends/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    @QueryBudget(QueryBudget.UNLIMITED)
+    public BulkImportResult importFriendships(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                              InputStream body) throws IOException {
+        log.info("Получен запрос POST /users/friends/bulk, Content-Type = {}", contentType);
+        return bulkImportService.importFriendships(body, format(contentType));
+    }
+
+    private static BulkImportService.Format format(String contentType) {
+        return TEXT_CSV.isCompatibleWith(MediaType.parseMediaType(contentType))
+                ? BulkImportService.Format.CSV
+                : BulkImportService.Format.NDJSON;
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+// выгрузка каталогов в формате NDJSON: одна строка JSON на сущность, без сборки списка в памяти
+@RestController
+@Slf4j
+public class ExportController {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // как часто сбрасывать буфер клиенту
+    private static final int FLUSH_EVERY = 500;
+
+    private final FilmService filmService;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+
+    @Autowired
+    public ExportController(FilmService filmService, UserService userService, ObjectMapper objectMapper) {
+        this.filmService = filmService;
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @GetMapping(value = "/films/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportFilms(@RequestParam(required = false, defaultValue = "false") boolean gzip) {
+        log.info("Получен запрос GET /films/export с параметрами gzip = {}", gzip);
+        return export(gzip, filmService::streamAll);
+    }
+
+    @GetMapping(value = "/users/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(required = false, defaultValue = "false") boolean gzip) {
+        log.info("Получен запрос GET /users/export с параметрами gzip = {}", gzip);
+        return export(gzip, userService::streamAll);
+    }
+
+    // запись в выходной поток блокируется, пока медленный клиент не заберет данные,
+    // поэтому чтение из БД не опережает клиента больше чем на буфер
+    private <T> ResponseEntity<StreamingResponseBody> export(boolean gzip, Consumer<Consumer<T>> source) {
+        StreamingResponseBody body = responseStream -> {
+            OutputStream out = gzip
+                    ? new GZIPOutputStream(responseStream, BUFFER_SIZE)
+                    : new BufferedOutputStream(responseStream, BUFFER_SIZE);
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            int[] written = {0};
+            try {
+                source.accept(value -> {
+                    try {
+                        writer.writeValue(generator, value);
+                        if (++written[0] % FLUSH_EVERY == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (written[0] > 0) {
+                generator.writeRaw('\n');
+            }
+            generator.close();
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+}
@@ -2,15 +2,23 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.logging.SampledLog;
+import ru.yandex.practicum.filmorate.metrics.QueryBudget;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ValidationService;
 
 import java.util.*;
 
 @RestController
 @Slf4j
 public class FilmController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final FilmService filmService;
 
     @Autowired
@@ -20,34 +28,59 @@ public class FilmController {
 
     @PostMapping("/films")
     public Film create(@RequestBody Film film) {
-        log.info("Получен запрос POST /films с параметрами {}", film);
+        log.info("Получен запрос POST /films с параметрами id = {}, name = {}", film.getId(), film.getName());
         return filmService.create(film);
     }
 
     @PutMapping("/films")
     public Film update(@RequestBody Film film) {
-        log.info("Получен запрос PUT /films с параметрами {}", film);
+        log.info("Получен запрос PUT /films с параметрами id = {}, name = {}", film.getId(), film.getName());
         return filmService.update(film);
     }
 
     @DeleteMapping("/films")
     public void delete(@RequestBody Film film) {
-        log.info("Получен запрос DELETE /films с параметрами {}", film);
+        log.info("Получен запрос DELETE /films с параметрами id = {}, name = {}", film.getId(), film.getName());
         filmService.delete(film);
     }
 
+    // условный GET: ETag и Last-Modified берутся из версии фильма, и если клиент прислал актуальные
+    // If-None-Match или If-Modified-Since, ответ 304 уходит после одного запроса версии, без сборки фильма.
+    // Версия читается раньше фильма, поэтому при одновременном изменении ETag может отстать от тела,
+    // но не опередить его - клиент тогда просто получит фильм заново
     @GetMapping("films/{id}")
-    public Film get(@PathVariable int id) {
+    @QueryBudget(4)
+    @SampledLog(10)
+    public Film get(@PathVariable int id, WebRequest request) {
         log.info("Получен запрос GET /films/{id} с параметрами {}", id);
+        EntityVersion version = filmService.getVersion(id);
+        if (request.checkNotModified(version.getETag(), version.getUpdatedAt().toEpochMilli())) {
+            return null;
+        }
         return filmService.get(id);
     }
 
     @GetMapping("/films")
+    @QueryBudget(3)
     public List<Film> findAll() {
         log.info("Получен запрос GET /films.");
         return filmService.findAll();
     }
 
+    // постраничная выдача по первичному ключу, курсор следующей страницы - в заголовке X-Next-Cursor
+    @GetMapping(value = "/films", params = "limit")
+    @QueryBudget(5)
+    public ResponseEntity<List<Film>> findPage(@RequestParam int limit,
+                                               @RequestParam(required = false, defaultValue = "0") int after) {
+        log.info("Получен запрос GET /films?limit={limit}&after={after} с параметрами limit = {}, after = {}", limit, after);
+        List<Film> films = filmService.findPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (films.size() == Math.min(limit, ValidationService.MAX_PAGE_SIZE)) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(films.get(films.size() - 1).getId()));
+        }
+        return response.body(films);
+    }
+
     @PutMapping("/films/{id}/like/{userId}")
     public void likeFilm(@PathVariable("id") int filmId, @PathVariable int userId) {
         log.info("Получен запрос PUT /films/{id}/like/{userId} с параметрами filmId = {}, userId = {}", filmId, userId);
@@ -61,6 +94,8 @@ public class FilmController {
     }
 
     @GetMapping("/films/popular")
+    @QueryBudget(3)
+    @SampledLog(100)
     public List<Film> getPopularFilms(@RequestParam(required = false, defaultValue = "10") int count) {
         log.info("Получен запрос GET /films/popular?count={count} с параметрами count = {}", count);
         return filmService.getPopularFilms(count);
@@ -2,6 +2,8 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
@@ -9,10 +11,14 @@ import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @Slf4j
 public class GenreController {
+    // справочник меняется только вместе с data.sql, поэтому клиенты и прокси могут хранить его сутки
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic();
+
     private final FilmService filmService;
 
     @Autowired
@@ -21,14 +27,14 @@ public class GenreController {
     }
 
     @GetMapping("/genres/{id}")
-    public Genre getGenre(@PathVariable int id) {
+    public ResponseEntity<Genre> getGenre(@PathVariable int id) {
         log.info("Получен запрос GET /genres/{id} с параметрами id = {}", id);
-        return filmService.getGenre(id);
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).body(filmService.getGenre(id));
     }
 
     @GetMapping("/genres")
-    public List<Genre> findAllGenres() {
+    public ResponseEntity<List<Genre>> findAllGenres() {
         log.info("Получен запрос GET /genres.");
-        return filmService.findAllGenres();
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).body(filmService.findAllGenres());
     }
 }
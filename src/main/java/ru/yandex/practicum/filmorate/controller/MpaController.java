@@ -2,6 +2,8 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
@@ -9,10 +11,14 @@ import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @Slf4j
 public class MpaController {
+    // рейтинги, как и жанры, - неизменный справочник
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic();
+
     private final FilmService filmService;
 
     @Autowired
@@ -21,14 +27,14 @@ public class MpaController {
     }
 
     @GetMapping("/mpa/{id}")
-    public Mpa getRating(@PathVariable int id) {
+    public ResponseEntity<Mpa> getRating(@PathVariable int id) {
         log.info("Получен запрос GET /mpa/{id} с параметрами id = {}", id);
-        return filmService.getMpa(id);
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).body(filmService.getMpa(id));
     }
 
     @GetMapping("/mpa")
-    public List<Mpa> findAllGRatings() {
+    public ResponseEntity<List<Mpa>> findAllGRatings() {
         log.info("Получен запрос GET /mpa.");
-        return filmService.findAllMpa();
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).body(filmService.findAllMpa());
     }
 }
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.ReactiveFilmService;
+
+// неблокирующий вариант чтения фильмов. Списки отдаются в NDJSON по мере чтения из БД: Spring MVC
+// запрашивает у Flux следующий фильм, только когда записал предыдущий, поэтому медленный клиент тормозит чтение
+@RestController
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+public class ReactiveFilmController {
+    private final ReactiveFilmService filmService;
+
+    @Autowired
+    public ReactiveFilmController(ReactiveFilmService filmService) {
+        this.filmService = filmService;
+    }
+
+    @GetMapping("/reactive/films/{id}")
+    public Mono<Film> get(@PathVariable int id) {
+        log.info("Получен запрос GET /reactive/films/{id} с параметрами {}", id);
+        return filmService.get(id);
+    }
+
+    @GetMapping(value = "/reactive/films", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Film> findAll() {
+        log.info("Получен запрос GET /reactive/films.");
+        return filmService.findAll();
+    }
+
+    @GetMapping(value = "/reactive/films/popular", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Film> getPopularFilms(@RequestParam(required = false, defaultValue = "10") int count) {
+        log.info("Получен запрос GET /reactive/films/popular?count={count} с параметрами count = {}", count);
+        return filmService.getPopularFilms(count);
+    }
+}
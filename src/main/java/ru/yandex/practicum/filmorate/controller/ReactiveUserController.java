@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ReactiveUserService;
+
+// неблокирующий вариант чтения пользователей, списки - в NDJSON по мере чтения из БД
+@RestController
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+public class ReactiveUserController {
+    private final ReactiveUserService userService;
+
+    @Autowired
+    public ReactiveUserController(ReactiveUserService userService) {
+        this.userService = userService;
+    }
+
+    @GetMapping("/reactive/users/{id}")
+    public Mono<User> get(@PathVariable int id) {
+        log.info("Получен запрос GET /reactive/users/{id} с параметрами id = {}", id);
+        return userService.get(id);
+    }
+
+    @GetMapping(value = "/reactive/users", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> findAll() {
+        log.info("Получен запрос GET /reactive/users.");
+        return userService.findAll();
+    }
+
+    @GetMapping(value = "/reactive/users/{id}/friends", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> getFriends(@PathVariable("id") int userId) {
+        log.info("Получен запрос GET /reactive/users/{id}/friends с параметрами id = {}", userId);
+        return userService.getUserFriends(userId);
+    }
+
+    @GetMapping(value = "/reactive/users/{id}/friends/common/{otherId}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> getCommonFriends(@PathVariable("id") int userId, @PathVariable int otherId) {
+        log.info("Получен запрос GET /reactive/users/{id}/friends/common/{otherId} с параметрами id = {}, otherId = {}",
+                userId, otherId);
+        return userService.getCommonFriends(userId, otherId);
+    }
+}
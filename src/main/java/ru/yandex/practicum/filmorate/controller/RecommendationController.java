@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.util.List;
+
+@RestController
+@Slf4j
+public class RecommendationController {
+    private final FilmService filmService;
+
+    @Autowired
+    public RecommendationController(FilmService filmService) {
+        this.filmService = filmService;
+    }
+
+    @GetMapping("/users/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable("id") int userId,
+                                         @RequestParam(required = false, defaultValue = "10") int count) {
+        log.info("Получен запрос GET /users/{id}/recommendations с параметрами id = {}, count = {}", userId, count);
+        return filmService.getRecommendations(userId, count);
+    }
+}
@@ -2,9 +2,15 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.logging.SampledLog;
+import ru.yandex.practicum.filmorate.metrics.QueryBudget;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.service.ValidationService;
 
 import java.util.*;
 
@@ -20,34 +26,56 @@ public class UserController {
 
     @PostMapping("/users")
     public User create(@RequestBody User user) {
-        log.info("Получен запрос POST /users с параметрами {}", user);
+        log.info("Получен запрос POST /users с параметрами id = {}, login = {}", user.getId(), user.getLogin());
         return userService.create(user);
     }
 
     @PutMapping("/users")
     public User update(@RequestBody User user) {
-        log.info("Получен запрос PUT /users с параметрами {}", user);
+        log.info("Получен запрос PUT /users с параметрами id = {}, login = {}", user.getId(), user.getLogin());
         return userService.update(user);
     }
 
     @DeleteMapping("/users")
     public void delete(@RequestBody User user) {
-        log.info("Получен запрос DELETE /users с параметрами {}", user);
+        log.info("Получен запрос DELETE /users с параметрами id = {}, login = {}", user.getId(), user.getLogin());
         userService.delete(user);
     }
 
+    // условный GET по версии пользователя, как GET /films/{id}: 304 отдается без загрузки друзей
     @GetMapping("users/{id}")
-    public User get(@PathVariable int id) {
+    @QueryBudget(3)
+    @SampledLog(10)
+    public User get(@PathVariable int id, WebRequest request) {
         log.info("Получен запрос GET /users/{id} с параметрами id = {}", id);
+        EntityVersion version = userService.getVersion(id);
+        if (request.checkNotModified(version.getETag(), version.getUpdatedAt().toEpochMilli())) {
+            return null;
+        }
         return userService.get(id);
     }
 
     @GetMapping("/users")
+    @QueryBudget(2)
     public List<User> findAll() {
         log.info("Получен запрос GET /users.");
         return userService.findAll();
     }
 
+    // постраничная выдача по первичному ключу, курсор следующей страницы - в заголовке X-Next-Cursor
+    @GetMapping(value = "/users", params = "limit")
+    @QueryBudget(3)
+    public ResponseEntity<List<User>> findPage(@RequestParam int limit,
+                                               @RequestParam(required = false, defaultValue = "0") int after) {
+        log.info("Получен запрос GET /users?limit={limit}&after={after} с параметрами limit = {}, after = {}", limit, after);
+        List<User> users = userService.findPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (users.size() == Math.min(limit, ValidationService.MAX_PAGE_SIZE)) {
+            response.header(FilmController.NEXT_CURSOR_HEADER, String.valueOf(users.get(users.size() - 1).getId()));
+        }
+        return response.body(users);
+    }
+
     @PutMapping("/users/{id}/friends/{friendId}")
     public void addFriend(@PathVariable("id") int userId, @PathVariable int friendId) {
         log.info("Получен запрос PUT /users/{id}/friends/{friendId} с параметрами id = {}, friendId = {}", userId, friendId);
@@ -61,12 +89,23 @@ public class UserController {
     }
 
     @GetMapping("/users/{id}/friends")
+    @QueryBudget(1)
+    @SampledLog(10)
     public List<User> getFriends(@PathVariable("id") int userId) {
         log.info("Получен запрос GET /users/{id}/friends с параметрами id = {}", userId);
         return userService.getUserFriends(userId);
     }
 
+    @GetMapping("/users/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable("id") int userId,
+                                           @RequestParam(required = false, defaultValue = "10") int limit) {
+        log.info("Получен запрос GET /users/{id}/friends/suggestions с параметрами id = {}, limit = {}", userId, limit);
+        return userService.getFriendSuggestions(userId, limit);
+    }
+
     @GetMapping("/users/{id}/friends/common/{otherId}")
+    @QueryBudget(1)
+    @SampledLog(10)
     public List<User> getCommonFriends(@PathVariable("id") int userId, @PathVariable int otherId) {
         log.info("Получен запрос GET /users/{id}/friends/common/{otherId} с параметрами id = {}, otherId = {}", userId, otherId);
         return userService.getCommonFriends(userId, otherId);
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.io.IOException;
+import java.util.Set;
+
+// фильм в JSON без рефлексии: поля пишутся напрямую в генератор, их имена закодированы заранее,
+// лайки выводятся из int[] без упаковки в Integer. Порядок и формат полей - как у Jackson по умолчанию
+public class FilmSerializer extends StdSerializer<Film> {
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString RELEASE_DATE = new SerializedString("releaseDate");
+    private static final SerializedString DESCRIPTION = new SerializedString("description");
+    private static final SerializedString DURATION = new SerializedString("duration");
+    private static final SerializedString RATE = new SerializedString("rate");
+    private static final SerializedString MPA = new SerializedString("mpa");
+    private static final SerializedString GENRES = new SerializedString("genres");
+    private static final SerializedString LIKES = new SerializedString("likes");
+
+    public FilmSerializer() {
+        super(Film.class);
+    }
+
+    @Override
+    public void serialize(Film film, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(film);
+        gen.writeFieldName(ID);
+        gen.writeNumber(film.getId());
+        gen.writeFieldName(NAME);
+        gen.writeString(film.getName());
+        gen.writeFieldName(RELEASE_DATE);
+        JsonWriters.writeDate(gen, film.getReleaseDate());
+        gen.writeFieldName(DESCRIPTION);
+        gen.writeString(film.getDescription());
+        gen.writeFieldName(DURATION);
+        gen.writeNumber(film.getDuration());
+        gen.writeFieldName(RATE);
+        gen.writeNumber(film.getRate());
+        gen.writeFieldName(MPA);
+        writeMpa(gen, film.getMpa());
+        gen.writeFieldName(GENRES);
+        writeGenres(gen, film.getGenres());
+        gen.writeFieldName(LIKES);
+        JsonWriters.writeIds(gen, film.getLikes());
+        gen.writeEndObject();
+    }
+
+    private static void writeMpa(JsonGenerator gen, Mpa mpa) throws IOException {
+        if (mpa == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartObject(mpa);
+        gen.writeFieldName(ID);
+        gen.writeNumber(mpa.getId());
+        gen.writeFieldName(NAME);
+        gen.writeString(mpa.getName());
+        gen.writeEndObject();
+    }
+
+    private static void writeGenres(JsonGenerator gen, Set<Genre> genres) throws IOException {
+        if (genres == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartArray(genres, genres.size());
+        for (Genre genre : genres) {
+            gen.writeStartObject(genre);
+            gen.writeFieldName(ID);
+            gen.writeNumber(genre.getId());
+            gen.writeFieldName(NAME);
+            gen.writeString(genre.getName());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+}
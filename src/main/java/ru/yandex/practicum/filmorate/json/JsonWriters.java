@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import ru.yandex.practicum.filmorate.model.IntSet;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+// общие для сериализаторов значения: даты в формате @JsonFormat моделей и множества id
+final class JsonWriters {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private JsonWriters() {
+    }
+
+    static void writeDate(JsonGenerator gen, LocalDate date) throws IOException {
+        if (date == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(DATE_FORMAT.format(date));
+        }
+    }
+
+    static void writeIds(JsonGenerator gen, IntSet ids) throws IOException {
+        if (ids == null) {
+            gen.writeNull();
+            return;
+        }
+        int[] values = ids.toIntArray();
+        gen.writeArray(values, 0, values.length);
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+
+// пользователь в JSON без рефлексии, как FilmSerializer
+public class UserSerializer extends StdSerializer<User> {
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString EMAIL = new SerializedString("email");
+    private static final SerializedString LOGIN = new SerializedString("login");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString BIRTHDAY = new SerializedString("birthday");
+    private static final SerializedString FRIENDS = new SerializedString("friends");
+
+    public UserSerializer() {
+        super(User.class);
+    }
+
+    @Override
+    public void serialize(User user, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(user);
+        gen.writeFieldName(ID);
+        gen.writeNumber(user.getId());
+        gen.writeFieldName(EMAIL);
+        gen.writeString(user.getEmail());
+        gen.writeFieldName(LOGIN);
+        gen.writeString(user.getLogin());
+        gen.writeFieldName(NAME);
+        gen.writeString(user.getName());
+        gen.writeFieldName(BIRTHDAY);
+        JsonWriters.writeDate(gen, user.getBirthday());
+        gen.writeFieldName(FRIENDS);
+        JsonWriters.writeIds(gen, user.getFriends());
+        gen.writeEndObject();
+    }
+}
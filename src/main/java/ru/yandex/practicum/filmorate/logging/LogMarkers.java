@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+public final class LogMarkers {
+    // промах по id: такие сообщения ограничивает NotFoundLogLimiter
+    public static final Marker NOT_FOUND = MarkerFactory.getMarker("NOT_FOUND");
+
+    private LogMarkers() {
+    }
+}
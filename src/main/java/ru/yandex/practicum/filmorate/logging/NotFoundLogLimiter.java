@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Marker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// не больше perSecond сообщений с маркером NOT_FOUND в секунду: перебор несуществующих id не должен
+// заваливать лог. Число отброшенных сообщений выводится одной строкой в начале следующей секунды
+@Slf4j
+public class NotFoundLogLimiter extends TurboFilter {
+    private final int perSecond;
+    private final AtomicLong currentSecond = new AtomicLong();
+    private final AtomicInteger logged = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    public NotFoundLogLimiter(int perSecond) {
+        this.perSecond = perSecond;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+                              Throwable t) {
+        if (format == null || marker == null || !marker.contains(LogMarkers.NOT_FOUND)) {
+            return FilterReply.NEUTRAL;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        long previous = currentSecond.get();
+        if (second != previous && currentSecond.compareAndSet(previous, second)) {
+            logged.set(0);
+            int skipped = dropped.getAndSet(0);
+            if (skipped > 0) {
+                log.warn("Пропущено {} сообщений о ненайденных сущностях (не больше {} в секунду)", skipped,
+                        perSecond);
+            }
+        }
+        if (logged.incrementAndGet() <= perSecond) {
+            return FilterReply.NEUTRAL;
+        }
+        dropped.incrementAndGet();
+        return FilterReply.DENY;
+    }
+}
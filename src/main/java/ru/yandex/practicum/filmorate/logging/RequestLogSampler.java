@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// выборка INFO-сообщений контроллеров: у каждого сообщения свой счетчик, и пишется каждое rate-е.
+// Частота берется из @SampledLog обработчика, в котором сообщение встретилось впервые, иначе - defaultRate.
+// Турбофильтр решает до форматирования, поэтому у отброшенных сообщений не вызывается и toString параметров
+public class RequestLogSampler extends TurboFilter {
+    private final String loggerPrefix;
+    private final int defaultRate;
+    // ключ - строка формата сообщения: у каждого обработчика она своя
+    private final Map<String, Sample> samples = new ConcurrentHashMap<>();
+
+    public RequestLogSampler(String loggerPrefix, int defaultRate) {
+        this.loggerPrefix = loggerPrefix;
+        this.defaultRate = Math.max(1, defaultRate);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+                              Throwable t) {
+        if (format == null || level != Level.INFO || !logger.getName().startsWith(loggerPrefix)) {
+            return FilterReply.NEUTRAL;
+        }
+        Sample sample = samples.computeIfAbsent(format, key -> new Sample(currentHandlerRate()));
+        return sample.next() ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private int currentHandlerRate() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return defaultRate;
+        }
+        Object handler = attributes.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+        if (handler instanceof HandlerMethod) {
+            SampledLog sampled = ((HandlerMethod) handler).getMethodAnnotation(SampledLog.class);
+            if (sampled != null) {
+                return Math.max(1, sampled.value());
+            }
+        }
+        return defaultRate;
+    }
+
+    private static class Sample {
+        private final int rate;
+        private final AtomicLong counter = new AtomicLong();
+
+        Sample(int rate) {
+            this.rate = rate;
+        }
+
+        // первое сообщение всегда пишется
+        boolean next() {
+            return rate == 1 || counter.getAndIncrement() % rate == 0;
+        }
+    }
+}
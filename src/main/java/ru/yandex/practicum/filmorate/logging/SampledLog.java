@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// INFO-сообщения обработчика пишутся в лог для каждого value-го запроса; проверяет RequestLogSampler.
+// Для частых чтений, где полный лог запросов заметно нагружает приложение
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SampledLog {
+    int value();
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import ru.yandex.practicum.filmorate.storage.SqlChunks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// JDBC-выражения, подготовленные в текущем потоке между begin() и end(): число и текст SQL.
+// Вне такого интервала выражения не считаются, так что фоновые задачи ничего не стоят
+public final class JdbcStatementCounter {
+    // больше текстов SQL на один интервал не хранится, счетчик при этом продолжает расти
+    private static final int MAX_RECORDED_SQL = 1000;
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+\\b");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final ThreadLocal<Statements> CURRENT = new ThreadLocal<>();
+
+    private JdbcStatementCounter() {
+    }
+
+    public static Statements begin() {
+        Statements statements = new Statements();
+        CURRENT.set(statements);
+        return statements;
+    }
+
+    // выражения с последнего begin() в этом потоке; пустой результат, если подсчет не шел
+    public static Statements end() {
+        Statements statements = CURRENT.get();
+        CURRENT.remove();
+        return statements != null ? statements : new Statements();
+    }
+
+    // идущий в этом потоке подсчет или null
+    public static Statements current() {
+        return CURRENT.get();
+    }
+
+    static void record(String sql) {
+        Statements statements = CURRENT.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+    }
+
+    // SQL без литералов, с одним ? вместо списка параметров IN и одиночными пробелами:
+    // запросы, отличающиеся только значениями и длиной IN, получают один отпечаток
+    public static String fingerprint(String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = PARAMETER_LIST.matcher(normalized).replaceAll("?");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    // в выражении есть список IN ровно из SqlChunks.IN_CHUNK_SIZE параметров - полная порция хранилища
+    static boolean isFullInChunk(String sql) {
+        if (sql == null || sql.length() < SqlChunks.IN_CHUNK_SIZE * 2) {
+            return false;
+        }
+        Matcher parameters = PARAMETER_LIST.matcher(sql);
+        while (parameters.find()) {
+            long count = parameters.group().chars().filter(c -> c == '?').count();
+            if (count == SqlChunks.IN_CHUNK_SIZE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static final class Statements {
+        private final List<String> sql = new ArrayList<>();
+        private int count;
+
+        private void add(String statement) {
+            count++;
+            if (statement != null && sql.size() < MAX_RECORDED_SQL) {
+                sql.add(statement);
+            }
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        // продолжения чтения порциями: выражения, у которых предыдущее выражение с тем же отпечатком передало
+        // полную порцию IN. Столько выражений сверх бюджета эндпоинта - чтение больших списков, а не лишние запросы
+        public int getChunkContinuations() {
+            int[] continuations = {0};
+            forEachFingerprint((fingerprint, continuation) -> {
+                if (continuation) {
+                    continuations[0]++;
+                }
+            });
+            return continuations[0];
+        }
+
+        // отпечатки без продолжений чтения порциями. Первая порция каждого чтения считается, поэтому цикл
+        // N+1, который на каждом шаге читает полную порцию и остаток, виден как повтор
+        public Map<String, Integer> getRepeats() {
+            Map<String, Integer> repeats = new LinkedHashMap<>();
+            forEachFingerprint((fingerprint, continuation) -> {
+                if (!continuation) {
+                    repeats.merge(fingerprint, 1, Integer::sum);
+                }
+            });
+            return repeats;
+        }
+
+        // отпечатки выражений по порядку и признак продолжения чтения порциями
+        private void forEachFingerprint(BiConsumer<String, Boolean> action) {
+            Set<String> afterFullChunk = new HashSet<>();
+            for (String statement : sql) {
+                String fingerprint = fingerprint(statement);
+                action.accept(fingerprint, afterFullChunk.contains(fingerprint));
+                if (isFullInChunk(statement)) {
+                    afterFullChunk.add(fingerprint);
+                } else {
+                    afterFullChunk.remove(fingerprint);
+                }
+            }
+        }
+
+        // отпечатки SQL с числом выполнений, в порядке первого появления
+        public Map<String, Integer> getFingerprints() {
+            Map<String, Integer> fingerprints = new LinkedHashMap<>();
+            for (String statement : sql) {
+                fingerprints.merge(fingerprint(statement), 1, Integer::sum);
+            }
+            return fingerprints;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTags;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.yandex.practicum.filmorate.exception.QueryBudgetExceededException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// число JDBC-выражений на HTTP-запрос: распределение filmorate.jdbc.statements с тегами method и uri
+// (шаблон пути, как у http.server.requests) и проверка @QueryBudget эндпоинта. Выражения, выполненные
+// после ухода запроса в асинхронный режим (потоковая выгрузка, /reactive/...), сюда не попадают
+@Component
+@Slf4j
+public class JdbcStatementsFilter extends OncePerRequestFilter {
+    static final String METRIC = "filmorate.jdbc.statements";
+
+    private final MeterRegistry registry;
+    private final QueryBudgetProperties properties;
+
+    public JdbcStatementsFilter(MeterRegistry registry, QueryBudgetProperties properties) {
+        this.registry = registry;
+        this.properties = properties;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        JdbcStatementCounter.begin();
+        JdbcStatementCounter.Statements statements;
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            statements = JdbcStatementCounter.end();
+            DistributionSummary.builder(METRIC)
+                    .description("JDBC-выражений на HTTP-запрос")
+                    .baseUnit("statements")
+                    .tags(Tags.of(WebMvcTags.method(request), WebMvcTags.uri(request, response)))
+                    .register(registry)
+                    .record(statements.getCount());
+        }
+        checkBudget(request, statements);
+    }
+
+    private void checkBudget(HttpServletRequest request, JdbcStatementCounter.Statements statements) {
+        int budget = budget(request);
+        if (budget == QueryBudget.UNLIMITED || statements.getCount() == 0) {
+            return;
+        }
+        String problem = null;
+        // каждое продолжение чтения порциями IN разрешает еще одно выражение: бюджет растет с числом порций
+        int continuations = statements.getChunkContinuations();
+        if (statements.getCount() > (long) budget + continuations) {
+            problem = "выполнил " + statements.getCount() + " SQL-выражений при бюджете " + budget +
+                    (continuations > 0 ? " и продолжениях порций IN: " + continuations : "");
+        } else if (statements.getCount() >= properties.getRepeatThreshold()) {
+            int repeats = statements.getRepeats().values().stream().mapToInt(Integer::intValue).max().orElse(0);
+            if (repeats >= properties.getRepeatThreshold()) {
+                problem = "повторил одно SQL-выражение " + repeats + " раз (возможен N+1)";
+            }
+        }
+        if (problem == null) {
+            return;
+        }
+        Map<String, Integer> fingerprints = statements.getFingerprints();
+        String message = "Запрос " + request.getMethod() + " " + request.getRequestURI() + " " + problem + ": " +
+                fingerprints.entrySet().stream()
+                        .map(fingerprint -> fingerprint.getValue() + " x " + fingerprint.getKey())
+                        .collect(Collectors.joining("; "));
+        if (properties.getMode() == QueryBudgetProperties.Mode.FAIL) {
+            throw new QueryBudgetExceededException(message);
+        }
+        log.warn(message);
+    }
+
+    // бюджет из @QueryBudget обработчика; без аннотации - только проверка повторов
+    private static int budget(HttpServletRequest request) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        if (handler instanceof HandlerMethod) {
+            QueryBudget budget = ((HandlerMethod) handler).getMethodAnnotation(QueryBudget.class);
+            if (budget != null) {
+                return budget.value();
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+}
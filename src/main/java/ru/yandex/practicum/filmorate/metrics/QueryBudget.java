@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// наибольшее число JDBC-выражений на один запрос к эндпоинту; проверяет JdbcStatementsFilter.
+// Хранилища читают связанные строки порциями IN по 500 id, бюджет задается для одной порции:
+// каждое выражение с полной порцией разрешает еще одно, чтобы длинные списки не выходили за бюджет.
+// UNLIMITED - без бюджета и без поиска повторяющихся запросов, для пакетных эндпоинтов
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+    int UNLIMITED = -1;
+
+    int value();
+}
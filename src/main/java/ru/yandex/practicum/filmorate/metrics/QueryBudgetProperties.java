@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// проверка числа JDBC-выражений на запрос (filmorate.query-budget.*)
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.query-budget")
+public class QueryBudgetProperties {
+    private Mode mode = Mode.WARN;
+    // столько выполнений одного отпечатка SQL за запрос считаются признаком N+1, даже без @QueryBudget
+    private int repeatThreshold = 20;
+
+    public enum Mode {
+        // предупреждение в лог с отпечатками SQL
+        WARN,
+        // QueryBudgetExceededException из фильтра - для тестов
+        FAIL
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// DataSource, соединения которого записывают подготовленные выражения в JdbcStatementCounter.
+// Оборачивает бин DataSource целиком, поэтому JdbcTemplate, JPA и менеджер транзакций работают с одними соединениями
+public class StatementCountingDataSource extends DelegatingDataSource implements AutoCloseable {
+    public StatementCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return counting(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return counting(super.getConnection(username, password));
+    }
+
+    // метод закрытия бина выводится по обертке, поэтому пул закрывается через нее
+    @Override
+    public void close() throws Exception {
+        DataSource target = obtainTargetDataSource();
+        if (target instanceof AutoCloseable) {
+            ((AutoCloseable) target).close();
+        } else if (target instanceof EmbeddedDatabase) {
+            ((EmbeddedDatabase) target).shutdown();
+        }
+    }
+
+    private static Connection counting(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("prepare")) {
+                        JdbcStatementCounter.record(args[0] instanceof String ? (String) args[0] : null);
+                    } else if (method.getName().equals("createStatement")) {
+                        // текст SQL станет известен только при execute
+                        JdbcStatementCounter.record(null);
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+// время, ошибки и число JDBC-выражений методов FilmStorage и UserStorage: таймер filmorate.storage с тегами
+// storage (класс хранилища), method и exception (none для успешных вызовов) и распределение
+// filmorate.storage.statements. Вызовы внутри самого хранилища не считаются
+@Aspect
+@Component
+public class StorageMetricsAspect {
+    static final String METRIC = "filmorate.storage";
+    static final String STATEMENTS_METRIC = "filmorate.storage.statements";
+    private static final String NO_EXCEPTION = "none";
+
+    private final MeterRegistry registry;
+    // метрики успешных вызовов по методу, чтобы не собирать теги на каждый вызов
+    private final ConcurrentMap<Method, MethodMeters> meters = new ConcurrentHashMap<>();
+
+    public StorageMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.storage.FilmStorage+.*(..)) || " +
+            "execution(public * ru.yandex.practicum.filmorate.storage.UserStorage+.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        // внутри HTTP-запроса подсчет уже идет, вне его (фоновые задачи) начинается здесь
+        JdbcStatementCounter.Statements statements = JdbcStatementCounter.current();
+        boolean ownCount = statements == null;
+        if (ownCount) {
+            statements = JdbcStatementCounter.begin();
+        }
+        int statementsBefore = statements.getCount();
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            timer(tags(joinPoint).and("exception", e.getClass().getSimpleName()))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        } finally {
+            if (ownCount) {
+                JdbcStatementCounter.end();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        MethodMeters methodMeters = meters.get(method);
+        if (methodMeters == null) {
+            methodMeters = meters.computeIfAbsent(method, key -> new MethodMeters(
+                    timer(tags(joinPoint).and("exception", NO_EXCEPTION)),
+                    DistributionSummary.builder(STATEMENTS_METRIC)
+                            .description("JDBC-выражений на вызов метода хранилища")
+                            .baseUnit("statements")
+                            .tags(tags(joinPoint))
+                            .register(registry)));
+        }
+        methodMeters.timer.record(elapsed, TimeUnit.NANOSECONDS);
+        methodMeters.statements.record(statements.getCount() - statementsBefore);
+        return result;
+    }
+
+    private Timer timer(Tags tags) {
+        return Timer.builder(METRIC)
+                .description("Время вызова метода хранилища")
+                .tags(tags)
+                .register(registry);
+    }
+
+    private static Tags tags(ProceedingJoinPoint joinPoint) {
+        return Tags.of("storage", joinPoint.getTarget().getClass().getSimpleName(),
+                "method", joinPoint.getSignature().getName());
+    }
+
+    private static final class MethodMeters {
+        private final Timer timer;
+        private final DistributionSummary statements;
+
+        private MethodMeters(Timer timer, DistributionSummary statements) {
+            this.timer = timer;
+            this.statements = statements;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// итог массовой загрузки: сколько строк прочитано, сохранено и отклонено, скорость и ошибки по номерам строк
+@Data
+public class BulkImportResult {
+    // ошибок в ответе не больше этого числа, остальные только учитываются в rowsFailed
+    public static final int MAX_ERRORS = 1000;
+
+    private int rowsTotal;
+    private int rowsImported;
+    private int rowsFailed;
+    private long durationMs;
+    private long rowsPerSecond;
+    private boolean errorsTruncated;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public void addError(int line, String message) {
+        rowsFailed++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RowError(line, message));
+        } else {
+            errorsTruncated = true;
+        }
+    }
+
+    public void finish(long startNanos) {
+        durationMs = (System.nanoTime() - startNanos) / 1_000_000;
+        rowsPerSecond = durationMs == 0 ? rowsImported : rowsImported * 1000L / durationMs;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        // номер строки во входных данных, считая заголовок CSV
+        private int line;
+        private String message;
+    }
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+// версия фильма или пользователя: счетчик изменений и время последнего изменения (столбцы version и updated_at).
+// Меняется при любом изменении, видимом в ответе GET, поэтому годится для строгого ETag
+@Value
+public class EntityVersion {
+    long version;
+    Instant updatedAt;
+
+    // время входит в ETag, чтобы после пересоздания базы та же пара (id, version) не совпала со старой
+    public String getETag() {
+        return "\"" + version + "-" + Long.toHexString(updatedAt.toEpochMilli()) + "\"";
+    }
+}
@@ -25,11 +25,12 @@ public class Film {
     private Mpa mpa;
     @Builder.Default
     private Set<Genre> genres = new HashSet<>();
+    // хранилище в памяти заменяет множество копией, volatile - для безопасной публикации копии
     @Builder.Default
-    private Set<Integer> likes = new HashSet<>();
+    private volatile IntSet likes = new IntSet();
 
     public Film() {
-        this.likes = new HashSet<>();
+        this.likes = new IntSet();
         this.genres = new HashSet<>();
     }
 }
@@ -0,0 +1,221 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+// множество id на отсортированном массиве int: 4 байта на элемент вместо ~40 у HashSet<Integer>
+// и никаких объектов на элемент. Поиск - двоичный, добавление по возрастанию (как строки из БД с ORDER BY) -
+// дописывание в конец, вставка в середину сдвигает хвост массива.
+// Как и HashSet, не потокобезопасно: хранилище в памяти заменяет множество копией, а не изменяет его
+public class IntSet extends AbstractSet<Integer> {
+    private static final int[] EMPTY = new int[0];
+    // столько id выводит toString, дальше - только общее число
+    private static final int TO_STRING_LIMIT = 10;
+
+    private int[] values;
+    private int size;
+    private int modCount;
+
+    public IntSet() {
+        values = EMPTY;
+    }
+
+    public IntSet(int capacity) {
+        values = capacity == 0 ? EMPTY : new int[capacity];
+    }
+
+    public IntSet(Collection<Integer> ids) {
+        this(ids.size());
+        if (ids instanceof IntSet) {
+            IntSet other = (IntSet) ids;
+            System.arraycopy(other.values, 0, values, 0, other.size);
+            size = other.size;
+            return;
+        }
+        for (Integer id : ids) {
+            values[size++] = id;
+        }
+        Arrays.sort(values, 0, size);
+        removeDuplicates();
+    }
+
+    public static IntSet of(int... ids) {
+        IntSet set = new IntSet(ids.length);
+        for (int id : ids) {
+            set.addInt(id);
+        }
+        return set;
+    }
+
+    public boolean containsInt(int id) {
+        return Arrays.binarySearch(values, 0, size, id) >= 0;
+    }
+
+    public boolean addInt(int id) {
+        if (size > 0 && values[size - 1] < id) {
+            ensureCapacity(size + 1);
+            values[size++] = id;
+            modCount++;
+            return true;
+        }
+        int index = Arrays.binarySearch(values, 0, size, id);
+        if (index >= 0) {
+            return false;
+        }
+        int position = -index - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(values, position, values, position + 1, size - position);
+        values[position] = id;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    public boolean removeInt(int id) {
+        int index = Arrays.binarySearch(values, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    // копия с добавленным id, исходное множество не меняется
+    public IntSet with(int id) {
+        IntSet copy = new IntSet(size + 1);
+        System.arraycopy(values, 0, copy.values, 0, size);
+        copy.size = size;
+        copy.addInt(id);
+        return copy;
+    }
+
+    // копия без id, исходное множество не меняется
+    public IntSet without(int id) {
+        IntSet copy = new IntSet(this);
+        copy.removeInt(id);
+        return copy;
+    }
+
+    public int[] toIntArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    public void forEachInt(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(values[i]);
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && containsInt((Integer) o);
+    }
+
+    @Override
+    public boolean add(Integer id) {
+        return addInt(id);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && removeInt((Integer) o);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    // множество попадает в логи через toString фильма и пользователя, поэтому строка ограничена
+    // первыми TO_STRING_LIMIT id и размером: "[1, 2, 3, ... всего 5000]"
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        int shown = Math.min(size, TO_STRING_LIMIT);
+        for (int i = 0; i < shown; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(values[i]);
+        }
+        if (size > shown) {
+            sb.append(", ... всего ").append(size);
+        }
+        return sb.append(']').toString();
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<>() {
+            private int next;
+            private int last = -1;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Integer next() {
+                checkForComodification();
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return values[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                checkForComodification();
+                removeAt(last);
+                next = last;
+                last = -1;
+                expectedModCount = modCount;
+            }
+
+            private void checkForComodification() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        };
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        modCount++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, Math.max(capacity, Math.max(4, values.length + (values.length >> 1))));
+        }
+    }
+
+    private void removeDuplicates() {
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || values[unique - 1] != values[i]) {
+                values[unique++] = values[i];
+            }
+        }
+        size = unique;
+    }
+}
@@ -7,8 +7,6 @@ import lombok.Data;
 import lombok.NonNull;
 
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.Set;
 
 @Data
 @Builder
@@ -22,10 +20,11 @@ public class User {
     private String name;
     @JsonFormat(pattern="yyyy-MM-dd")
     private LocalDate birthday;
+    // хранилище в памяти заменяет множество копией, volatile - для безопасной публикации копии
     @Builder.Default
-    private Set<Integer> friends = new HashSet<>();
+    private volatile IntSet friends = new IntSet();
 
     public User() {
-        this.friends = new HashSet<>();
+        this.friends = new IntSet();
     }
 }
@@ -0,0 +1,350 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+// массовая загрузка фильмов, пользователей, лайков и дружбы из NDJSON или CSV.
+// Строки читаются потоком и обрабатываются пачками по CHUNK_SIZE: проверка, затем одна пачка JDBC
+// в своей транзакции. Ошибочная строка не прерывает загрузку, а попадает в отчет с номером строки.
+// Рейтинг и матрица лайков после записи пачки обновляются только по ее строкам, без полного перестроения
+@Service
+@Slf4j
+public class BulkImportService {
+    // строк в одной транзакции: пачка JDBC достаточно большая, а блокировки держатся недолго
+    public static final int CHUNK_SIZE = 1000;
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final FilmService filmService;
+    private final TransactionOperations transactions;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public BulkImportService(FilmStorage filmStorage, UserStorage userStorage, FilmService filmService,
+                             TransactionOperations transactions, ObjectMapper objectMapper) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.filmService = filmService;
+        this.transactions = transactions;
+        this.objectMapper = objectMapper;
+    }
+
+    // CSV: name,releaseDate,description,duration,rate,mpa,genres; mpa - id рейтинга, genres - id жанров через ";"
+    public BulkImportResult importFilms(InputStream body, Format format) throws IOException {
+        Set<Integer> mpaIds = filmStorage.findAllMpa().stream().map(Mpa::getId).collect(Collectors.toSet());
+        Set<Integer> genreIds = filmStorage.findAllGenres().stream().map(Genre::getId).collect(Collectors.toSet());
+        return importRows("фильмов", body, format,
+                node -> objectMapper.treeToValue(node, Film.class),
+                films -> film -> checkFilm(film, mpaIds, genreIds),
+                films -> filmStorage.createAll(films).size(),
+                filmService::addImportedFilms);
+    }
+
+    // CSV: email,login,name,birthday
+    public BulkImportResult importUsers(InputStream body, Format format) throws IOException {
+        return importRows("пользователей", body, format,
+                node -> objectMapper.treeToValue(node, User.class),
+                users -> user -> {
+                    if (Optional.ofNullable(user.getName()).isEmpty() || user.getName().isBlank()) {
+                        user.setName(user.getLogin());
+                    }
+                    ValidationService.check(user);
+                },
+                users -> userStorage.createAll(users).size(),
+                users -> { });
+    }
+
+    // CSV: filmId,userId
+    public BulkImportResult importLikes(InputStream body, Format format) throws IOException {
+        return importRows("лайков", body, format,
+                node -> new int[]{intField(node, "filmId"), intField(node, "userId")},
+                likes -> {
+                    Set<Integer> films = filmStorage.findExistingIds(column(likes, 0));
+                    Set<Integer> users = userStorage.findExistingIds(column(likes, 1));
+                    return like -> {
+                        if (!films.contains(like[0])) {
+                            throw new FilmNotFoundException("Фильм с id = " + like[0] + " не найден");
+                        }
+                        if (!users.contains(like[1])) {
+                            throw new UserNotFoundException("Пользователь с id = " + like[1] + " не найден");
+                        }
+                    };
+                },
+                filmStorage::addLikes,
+                filmService::addImportedLikes);
+    }
+
+    // CSV: userId,friendId - заявка от userId к friendId, как при PUT /users/{id}/friends/{friendId}
+    public BulkImportResult importFriendships(InputStream body, Format format) throws IOException {
+        return importRows("заявок в друзья", body, format,
+                node -> new int[]{intField(node, "userId"), intField(node, "friendId")},
+                friendships -> {
+                    List<Integer> ids = new ArrayList<>(column(friendships, 0));
+                    ids.addAll(column(friendships, 1));
+                    Set<Integer> users = userStorage.findExistingIds(ids);
+                    return friendship -> {
+                        if (friendship[0] == friendship[1]) {
+                            throw new ValidationException("Пользователь не может добавить в друзья самого себя");
+                        }
+                        for (int id : friendship) {
+                            if (!users.contains(id)) {
+                                throw new UserNotFoundException("Пользователь с id = " + id + " не найден");
+                            }
+                        }
+                    };
+                },
+                userStorage::addFriendships,
+                friendships -> { });
+    }
+
+    private void checkFilm(Film film, Set<Integer> mpaIds, Set<Integer> genreIds) {
+        ValidationService.check(film);
+        if (film.getMpa() == null || !mpaIds.contains(film.getMpa().getId())) {
+            throw new ValidationException("Рейтинг не указан или не существует");
+        }
+        for (Genre genre : film.getGenres()) {
+            if (!genreIds.contains(genre.getId())) {
+                throw new ValidationException("Жанр с id = " + genre.getId() + " не существует");
+            }
+        }
+    }
+
+    // writer возвращает число действительно записанных строк, afterCommit получает строки
+    // успешно записанных пачек после фиксации транзакции
+    private <T> BulkImportResult importRows(String entity, InputStream body, Format format, RowParser<T> parser,
+                                            Function<List<T>, Consumer<T>> validator, ToIntFunction<List<T>> writer,
+                                            Consumer<List<T>> afterCommit) throws IOException {
+        long start = System.nanoTime();
+        BulkImportResult result = new BulkImportResult();
+        List<Row<T>> chunk = new ArrayList<>(CHUNK_SIZE);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            List<String> header = null;
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == Format.CSV && header == null) {
+                    header = parseCsvLine(line);
+                    continue;
+                }
+                result.setRowsTotal(result.getRowsTotal() + 1);
+                try {
+                    JsonNode node = format == Format.NDJSON ? objectMapper.readTree(line) : csvToJson(header, line);
+                    chunk.add(new Row<>(lineNumber, parser.parse(node)));
+                } catch (JsonProcessingException e) {
+                    result.addError(lineNumber, "Строка не разобрана: " + e.getOriginalMessage());
+                } catch (ValidationException e) {
+                    result.addError(lineNumber, e.getReason());
+                } catch (RuntimeException e) {
+                    result.addError(lineNumber, "Строка не разобрана: " + e.getMessage());
+                }
+                if (chunk.size() == CHUNK_SIZE) {
+                    writeChunk(chunk, validator, writer, afterCommit, result);
+                    chunk.clear();
+                }
+            }
+        }
+        writeChunk(chunk, validator, writer, afterCommit, result);
+        result.finish(start);
+        log.info("Загружено {} из {} {} за {} мс, {} строк/с, ошибок: {}", result.getRowsImported(),
+                result.getRowsTotal(), entity, result.getDurationMs(), result.getRowsPerSecond(), result.getRowsFailed());
+        return result;
+    }
+
+    // проверка пачки и запись одной транзакцией. Если база отвергла пачку (например, занятый логин),
+    // строки пачки записываются по одной, чтобы сохранить корректные и найти ошибочные.
+    // В отчет идет число строк, которые изменила база: уже существующий лайк или заявка не считаются
+    private <T> void writeChunk(List<Row<T>> chunk, Function<List<T>, Consumer<T>> validator,
+                                ToIntFunction<List<T>> writer, Consumer<List<T>> afterCommit,
+                                BulkImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Consumer<T> check = validator.apply(chunk.stream().map(Row::getValue).collect(Collectors.toList()));
+        List<Row<T>> valid = new ArrayList<>(chunk.size());
+        for (Row<T> row : chunk) {
+            try {
+                check.accept(row.getValue());
+                valid.add(row);
+            } catch (ValidationException e) {
+                result.addError(row.getLine(), e.getReason());
+            } catch (NotFoundException e) {
+                result.addError(row.getLine(), e.getMessage());
+            } catch (NullPointerException e) {
+                result.addError(row.getLine(), "Не заполнены обязательные поля");
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+        List<T> values = valid.stream().map(Row::getValue).collect(Collectors.toList());
+        try {
+            result.setRowsImported(result.getRowsImported() + write(writer, values));
+            afterCommit.accept(values);
+        } catch (DataAccessException e) {
+            log.warn("Пачка из {} строк не записана, строки записываются по одной: {}", valid.size(),
+                    e.getMostSpecificCause().getMessage());
+            List<T> written = new ArrayList<>(valid.size());
+            for (Row<T> row : valid) {
+                try {
+                    result.setRowsImported(result.getRowsImported() + write(writer, List.of(row.getValue())));
+                    written.add(row.getValue());
+                } catch (DuplicateKeyException rowError) {
+                    result.addError(row.getLine(), "Запись нарушает ограничение уникальности");
+                } catch (DataAccessException rowError) {
+                    result.addError(row.getLine(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+            afterCommit.accept(written);
+        }
+    }
+
+    private <T> int write(ToIntFunction<List<T>> writer, List<T> values) {
+        Integer written = transactions.execute(status -> writer.applyAsInt(values));
+        return written == null ? 0 : written;
+    }
+
+    // строка CSV как объект JSON с полями из заголовка; пустые значения пропускаются.
+    // Колонки mpa и genres содержат только id, как в запросе создания фильма
+    private JsonNode csvToJson(List<String> header, String line) {
+        List<String> values = parseCsvLine(line);
+        if (values.size() != header.size()) {
+            throw new ValidationException("Ожидалось значений: " + header.size() + ", получено: " + values.size());
+        }
+        ObjectNode node = objectMapper.createObjectNode();
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i);
+            String value = values.get(i);
+            if (value.isEmpty()) {
+                continue;
+            }
+            if ("mpa".equals(column)) {
+                node.putObject("mpa").put("id", value);
+            } else if ("genres".equals(column)) {
+                ArrayNode genres = node.putArray("genres");
+                for (String id : value.split(";")) {
+                    genres.addObject().put("id", id.trim());
+                }
+            } else {
+                node.put(column, value);
+            }
+        }
+        return node;
+    }
+
+    // значения через запятую; значение в кавычках может содержать запятые, кавычка внутри него удваивается.
+    // Перевод строки внутри значения не поддерживается: одна строка файла - одна запись
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+
+    private static int intField(JsonNode node, String name) {
+        JsonNode value = node.get(name);
+        if (value == null || value.isNull()) {
+            throw new ValidationException("Не указано поле " + name);
+        }
+        if (value.isTextual()) {
+            try {
+                return Integer.parseInt(value.asText().trim());
+            } catch (NumberFormatException e) {
+                throw new ValidationException("Поле " + name + " должно быть целым числом");
+            }
+        }
+        if (!value.canConvertToInt()) {
+            throw new ValidationException("Поле " + name + " должно быть целым числом");
+        }
+        return value.intValue();
+    }
+
+    private static List<Integer> column(List<int[]> pairs, int index) {
+        return pairs.stream().map(pair -> pair[index]).collect(Collectors.toList());
+    }
+
+    @FunctionalInterface
+    private interface RowParser<T> {
+        T parse(JsonNode node) throws JsonProcessingException;
+    }
+
+    private static class Row<T> {
+        private final int line;
+        private final T value;
+
+        Row(int line, T value) {
+            this.line = line;
+            this.value = value;
+        }
+
+        int getLine() {
+            return line;
+        }
+
+        T getValue() {
+            return value;
+        }
+    }
+}
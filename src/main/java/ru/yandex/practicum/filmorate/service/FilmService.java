@@ -1,8 +1,15 @@
 package ru.yandex.practicum.filmorate.service;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.logging.LogMarkers;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
@@ -10,23 +17,52 @@ import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
-import java.util.Comparator;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Service
+@Slf4j
 public class FilmService {
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
+    private final PopularityLeaderboard leaderboard = new PopularityLeaderboard();
+    private final LikeMatrix likeMatrix = new LikeMatrix();
+    // null - отложенная запись лайков выключена
+    private final LikeWriteBuffer likeBuffer;
+
+    public FilmService(FilmStorage filmStorage, UserStorage userStorage) {
+        this(filmStorage, userStorage, new LikeWriteBehindProperties());
+    }
 
     @Autowired
-    public FilmService(@Qualifier("FilmDbStorage") FilmStorage filmStorage, @Qualifier("UserDbStorage") UserStorage userStorage) {
+    public FilmService(FilmStorage filmStorage, UserStorage userStorage, LikeWriteBehindProperties writeBehind) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
+        this.likeBuffer = writeBehind.isEnabled() ? createLikeBuffer(writeBehind) : null;
+    }
+
+    private LikeWriteBuffer createLikeBuffer(LikeWriteBehindProperties properties) {
+        LikeJournal journal = properties.getDurability() == LikeWriteBehindProperties.Durability.MEMORY
+                ? null
+                : new LikeJournal(Path.of(properties.getJournalPath()),
+                        properties.getDurability() == LikeWriteBehindProperties.Durability.JOURNAL_FSYNC);
+        log.info("Включена отложенная запись лайков: пачка до {}, задержка до {} мс, надежность {}",
+                properties.getMaxBatchSize(), properties.getMaxStalenessMs(), properties.getDurability());
+        return new LikeWriteBuffer(properties.getMaxBatchSize(), properties.getMaxStalenessMs(), journal,
+                this::applyBufferedLikes);
     }
 
     public Film create(Film film) {
-        return filmStorage.create(film);
+        Film created = filmStorage.create(film);
+        leaderboard.add(created.getId());
+        return created;
     }
 
     public Film update(Film film) {
@@ -35,33 +71,173 @@ public class FilmService {
 
     public void delete(Film film) {
         filmStorage.delete(film);
+        leaderboard.remove(film.getId());
+        likeMatrix.removeFilm(film.getId());
+    }
+
+    // фильмы, которые лайкнул пользователь, до его удаления
+    public Set<Integer> getLikedFilmIds(int userId) {
+        return filmStorage.getLikedFilmIds(userId);
+    }
+
+    // лайки удаленного пользователя уже убраны из хранилища: рейтинг получает сохраненные счетчики его фильмов
+    public void removeUserLikes(int userId, Set<Integer> likedFilmIds) {
+        likeMatrix.removeUser(userId);
+        if (!likedFilmIds.isEmpty()) {
+            filmStorage.getLikeCounts(likedFilmIds).forEach(leaderboard::set);
+        }
     }
 
     public Film get(int id) {
         return filmStorage.get(id);
     }
 
+    // отложенные лайки меняют версию фильма, только когда попадают в хранилище, - вместе с самим ответом
+    public EntityVersion getVersion(int id) {
+        return filmStorage.getVersion(id);
+    }
+
     public List<Film> findAll() {
         return filmStorage.findAll();
     }
 
+    public void streamAll(Consumer<Film> consumer) {
+        filmStorage.streamAll(consumer);
+    }
+
+    public List<Film> findPage(int afterId, int limit) {
+        return filmStorage.findPage(afterId, ValidationService.checkPageLimit(limit));
+    }
+
     public void likeFilm(int filmId, int userId) {
+        if (likeBuffer != null) {
+            checkLikeTarget(filmId, userId);
+            likeBuffer.like(filmId, userId);
+            return;
+        }
         Film film = get(filmId);
-        User user = userStorage.get(userId);
-        filmStorage.likeFilm(film, user);
+        User user = userStorage.getWithoutFriends(userId);
+        if (filmStorage.likeFilm(film, user)) {
+            leaderboard.increment(filmId);
+            likeMatrix.like(userId, filmId);
+        }
     }
 
     public void dislikeFilm(int filmId, int userId) {
+        if (likeBuffer != null) {
+            checkLikeTarget(filmId, userId);
+            likeBuffer.dislike(filmId, userId);
+            return;
+        }
         Film film = get(filmId);
-        User user = userStorage.get(userId);
-        filmStorage.dislikeFilm(film, user);
+        User user = userStorage.getWithoutFriends(userId);
+        if (filmStorage.dislikeFilm(film, user)) {
+            leaderboard.decrement(filmId);
+            likeMatrix.dislike(userId, filmId);
+        }
+    }
+
+    // при отложенной записи проверяется только существование фильма и пользователя, без загрузки сущностей
+    private void checkLikeTarget(int filmId, int userId) {
+        if (filmStorage.findExistingIds(List.of(filmId)).isEmpty()) {
+            log.error(LogMarkers.NOT_FOUND, "Фильм с id = {} не найден", filmId);
+            throw new FilmNotFoundException("Фильм с id = " + filmId + " не найден");
+        }
+        if (userStorage.findExistingIds(List.of(userId)).isEmpty()) {
+            log.error(LogMarkers.NOT_FOUND, "Пользователь с id = {} не найден", userId);
+            throw new UserNotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+    }
+
+    // пачка из буфера: лайки и отмены пишутся пакетно, рейтинг получает сохраненные счетчики затронутых фильмов
+    private void applyBufferedLikes(LikeWriteBuffer.Batch batch) {
+        filmStorage.addLikes(batch.getLikes());
+        filmStorage.removeLikes(batch.getDislikes());
+        Set<Integer> filmIds = new HashSet<>();
+        batch.getLikes().forEach(like -> {
+            likeMatrix.like(like[1], like[0]);
+            filmIds.add(like[0]);
+        });
+        batch.getDislikes().forEach(like -> {
+            likeMatrix.dislike(like[1], like[0]);
+            filmIds.add(like[0]);
+        });
+        filmStorage.getLikeCounts(filmIds).forEach(leaderboard::set);
+    }
+
+    // фильмы массовой загрузки, уже сохраненные в хранилище
+    public void addImportedFilms(List<Film> films) {
+        films.forEach(film -> leaderboard.add(film.getId()));
+    }
+
+    // лайки массовой загрузки, уже сохраненные в хранилище: как у пачки из буфера, рейтинг получает
+    // сохраненные счетчики затронутых фильмов. Лайк, который уже был, матрицу не меняет
+    public void addImportedLikes(List<int[]> likes) {
+        Set<Integer> filmIds = new HashSet<>();
+        likes.forEach(like -> {
+            likeMatrix.like(like[1], like[0]);
+            filmIds.add(like[0]);
+        });
+        if (!filmIds.isEmpty()) {
+            filmStorage.getLikeCounts(filmIds).forEach(leaderboard::set);
+        }
+    }
+
+    // запись всех отложенных лайков, например перед чтением, которому важна точность
+    public void flushLikes() {
+        if (likeBuffer != null) {
+            likeBuffer.flushNow();
+        }
+    }
+
+    @PreDestroy
+    public void closeLikeBuffer() throws IOException {
+        if (likeBuffer != null) {
+            likeBuffer.close();
+        }
     }
 
     // вывод 10 наиболее популярных фильмов по количеству лайков
     public List<Film> getPopularFilms(int count) {
-        List<Film> films = filmStorage.findAll();
-        return films.stream().sorted(Comparator.comparingInt(f -> -f.getLikes().size())).limit(count)
-                .collect(Collectors.toList());
+        if (!leaderboard.isReady()) {
+            return filmStorage.getPopularFilms(count);
+        }
+        return filmStorage.getByIds(leaderboard.top(count));
+    }
+
+    // рейтинг строится из favorite_films после инициализации схемы, до этого популярные считает хранилище
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildLeaderboard() {
+        leaderboard.rebuild(() -> filmStorage.getLikeCounts(), filmStorage::getLikeCounts);
+        log.info("Рейтинг популярности построен, фильмов: {}", leaderboard.size());
+    }
+
+    // рекомендации фильмов по лайкам пользователей с похожими вкусами. Пока матрица строится после запуска,
+    // рекомендаций нет: строить ее на пути запроса слишком долго
+    public List<Film> getRecommendations(int userId, int count) {
+        userStorage.getWithoutFriends(userId);
+        int limit = ValidationService.checkPageLimit(count);
+        if (!likeMatrix.isReady()) {
+            return List.of();
+        }
+        int[] filmIds = likeMatrix.recommend(userId, limit);
+        return filmStorage.getByIds(Arrays.stream(filmIds).boxed().collect(Collectors.toList()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildLikeMatrix() {
+        likeMatrix.rebuild(filmStorage::streamLikes);
+        log.info("Матрица лайков построена, пользователей: {}", likeMatrix.size());
+    }
+
+    // ночная сверка счетчиков лайков с таблицей favorite_films
+    @Scheduled(cron = "${filmorate.likes.reconcile-cron:0 0 4 * * *}")
+    public void reconcileLikeCounts() {
+        int repaired = filmStorage.reconcileLikeCounts();
+        if (repaired > 0) {
+            log.warn("Исправлены счетчики лайков у {} фильмов", repaired);
+        }
+        rebuildLeaderboard();
     }
 
     public Genre getGenre(int id) {
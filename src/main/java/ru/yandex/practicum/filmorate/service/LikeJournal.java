@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// журнал событий лайков для отложенной записи: событие дописывается в файл до ответа клиенту,
+// поэтому после падения процесса еще не записанные в БД лайки восстанавливаются при запуске.
+// Строка журнала: "L <id фильма> <id пользователя>" для лайка, "U ..." для его отмены.
+// Перед сбросом пачки в БД журнал переименовывается в <файл>.flushing и удаляется после успешной записи
+@Slf4j
+public class LikeJournal implements Closeable {
+    private final Path path;
+    private final Path flushing;
+    // true - fsync после каждого события: переживает отключение питания, но медленнее
+    private final boolean fsync;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<LikeWriteBuffer.Event> recovered;
+    private FileChannel channel;
+
+    public LikeJournal(Path path, boolean fsync) {
+        this.path = path;
+        this.flushing = path.resolveSibling(path.getFileName() + ".flushing");
+        this.fsync = fsync;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            recovered = new ArrayList<>(read(flushing));
+            recovered.addAll(read(path));
+            rewrite(recovered);
+            Files.deleteIfExists(flushing);
+            channel = open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!recovered.isEmpty()) {
+            log.warn("В журнале лайков найдено {} не записанных в БД событий", recovered.size());
+        }
+    }
+
+    // события, оставшиеся в журнале с прошлого запуска, в порядке записи
+    public List<LikeWriteBuffer.Event> getRecovered() {
+        return recovered;
+    }
+
+    public void append(LikeWriteBuffer.Event event) {
+        ByteBuffer line = ByteBuffer.wrap(format(event).getBytes(StandardCharsets.US_ASCII));
+        lock.lock();
+        try {
+            while (line.hasRemaining()) {
+                channel.write(line);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // журнал текущей пачки откладывается в сторону, новые события пишутся в пустой файл
+    public void rotate() {
+        lock.lock();
+        try {
+            channel.close();
+            Files.move(path, flushing, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // пачка записана в БД (или ее события снова добавлены в журнал) - отложенный журнал больше не нужен
+    public void commitRotated() {
+        try {
+            Files.deleteIfExists(flushing);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void rewrite(List<LikeWriteBuffer.Event> events) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        StringBuilder content = new StringBuilder();
+        events.forEach(event -> content.append(format(event)));
+        Files.writeString(tmp, content, StandardCharsets.US_ASCII);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // недописанная при падении последняя строка (без перевода строки) пропускается
+    private static List<LikeWriteBuffer.Event> read(Path file) throws IOException {
+        List<LikeWriteBuffer.Event> events = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return events;
+        }
+        String content = Files.readString(file, StandardCharsets.US_ASCII);
+        String[] lines = content.split("\n", -1);
+        for (int i = 0; i < lines.length - 1; i++) {
+            String line = lines[i];
+            String[] parts = line.trim().split(" ");
+            if (parts.length != 3 || !("L".equals(parts[0]) || "U".equals(parts[0]))) {
+                continue;
+            }
+            try {
+                events.add(new LikeWriteBuffer.Event(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                        "L".equals(parts[0])));
+            } catch (NumberFormatException e) {
+                log.warn("Пропущена поврежденная строка журнала лайков: {}", line);
+            }
+        }
+        return events;
+    }
+
+    private static String format(LikeWriteBuffer.Event event) {
+        return (event.isLike() ? "L " : "U ") + event.getFilmId() + " " + event.getUserId() + "\n";
+    }
+}
@@ -0,0 +1,272 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+// разреженная матрица лайков для рекомендаций: для пользователя - отсортированный массив id понравившихся фильмов,
+// для фильма - отсортированный массив id лайкнувших пользователей. Массивы не изменяются после публикации,
+// лайк заменяет их копией, поэтому чтение идет без блокировок
+public class LikeMatrix {
+    private static final int[] EMPTY = new int[0];
+    // число ближайших соседей, чьи лайки формируют рекомендации
+    private static final int NEIGHBOURS = 20;
+    // фильмы, которые лайкнули почти все, мало говорят о вкусе, а поиск соседей по ним самый дорогой
+    private static final int MAX_FILM_AUDIENCE = 50_000;
+    // лайков по фильмам пользователя больше порога - пересечения считаются параллельно
+    private static final int PARALLEL_THRESHOLD = 10_000;
+    private static final int PARALLEL_CHUNKS = Runtime.getRuntime().availableProcessors() * 4;
+    // больше вес - выше, при равенстве меньший id выше
+    private static final Comparator<Map.Entry<Integer, Integer>> RANKING =
+            Map.Entry.<Integer, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private volatile State state = new State();
+    private volatile boolean ready;
+    // изменения держат блокировку на чтение, подмена матрицы после перестроения - на запись
+    private final ReentrantReadWriteLock publishLock = new ReentrantReadWriteLock();
+    // изменения, сделанные во время перестроения; null, пока перестроения нет
+    private Queue<Consumer<State>> changesDuringRebuild;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // заполнение по всем лайкам: likes.accept передает загрузчику функцию, принимающую пары (фильм, пользователь).
+    // Новая матрица строится в стороне и подменяет живую целиком; лайки и отмены, сделанные во время загрузки,
+    // повторяются на ней перед подменой - они идемпотентны, поэтому повтор уже учтенного в загрузке безвреден
+    public synchronized void rebuild(Consumer<BiConsumer<Integer, Integer>> likes) {
+        Queue<Consumer<State>> changes = new ConcurrentLinkedQueue<>();
+        withWriteLock(() -> changesDuringRebuild = changes);
+        try {
+            Map<Integer, IntArrayBuilder> films = new HashMap<>();
+            Map<Integer, IntArrayBuilder> users = new HashMap<>();
+            likes.accept((filmId, userId) -> {
+                films.computeIfAbsent(userId, id -> new IntArrayBuilder()).add(filmId);
+                users.computeIfAbsent(filmId, id -> new IntArrayBuilder()).add(userId);
+            });
+            State fresh = new State();
+            films.forEach((userId, builder) -> fresh.filmsByUser.put(userId, builder.toSortedArray()));
+            users.forEach((filmId, builder) -> fresh.usersByFilm.put(filmId, builder.toSortedArray()));
+            withWriteLock(() -> {
+                changes.forEach(change -> change.accept(fresh));
+                state = fresh;
+                ready = true;
+            });
+        } finally {
+            withWriteLock(() -> changesDuringRebuild = null);
+        }
+    }
+
+    public void like(int userId, int filmId) {
+        change(matrix -> {
+            matrix.filmsByUser.compute(userId, (id, old) -> insert(old, filmId));
+            matrix.usersByFilm.compute(filmId, (id, old) -> insert(old, userId));
+        });
+    }
+
+    public void dislike(int userId, int filmId) {
+        change(matrix -> {
+            matrix.filmsByUser.computeIfPresent(userId, (id, old) -> delete(old, filmId));
+            matrix.usersByFilm.computeIfPresent(filmId, (id, old) -> delete(old, userId));
+        });
+    }
+
+    public void removeFilm(int filmId) {
+        change(matrix -> {
+            int[] users = matrix.usersByFilm.remove(filmId);
+            if (users != null) {
+                for (int userId : users) {
+                    matrix.filmsByUser.computeIfPresent(userId, (id, old) -> delete(old, filmId));
+                }
+            }
+        });
+    }
+
+    public void removeUser(int userId) {
+        change(matrix -> {
+            int[] films = matrix.filmsByUser.remove(userId);
+            if (films != null) {
+                for (int filmId : films) {
+                    matrix.usersByFilm.computeIfPresent(filmId, (id, old) -> delete(old, userId));
+                }
+            }
+        });
+    }
+
+    public int[] films(int userId) {
+        return state.filmsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    public int size() {
+        return state.filmsByUser.size();
+    }
+
+    // рекомендации: фильмы, которые понравились пользователям с наибольшим пересечением лайков,
+    // но не самому пользователю. Вес фильма - сумма пересечений соседей, которые его лайкнули
+    public int[] recommend(int userId, int limit) {
+        State matrix = state;
+        int[] own = matrix.filmsByUser.getOrDefault(userId, EMPTY);
+        if (own.length == 0) {
+            return EMPTY;
+        }
+        Map<Integer, Integer> neighbours = top(countOverlaps(matrix, userId, own), NEIGHBOURS);
+
+        Map<Integer, Integer> scores = new HashMap<>();
+        neighbours.forEach((neighbourId, overlap) -> {
+            for (int filmId : matrix.filmsByUser.getOrDefault(neighbourId, EMPTY)) {
+                if (Arrays.binarySearch(own, filmId) < 0) {
+                    scores.merge(filmId, overlap, Integer::sum);
+                }
+            }
+        });
+        return top(scores, limit).keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // число общих лайков с каждым пользователем, лайкнувшим хотя бы один фильм из own
+    private static Map<Integer, Integer> countOverlaps(State matrix, int userId, int[] own) {
+        long postings = 0;
+        for (int filmId : own) {
+            postings += audience(matrix, filmId).length;
+        }
+        if (postings < PARALLEL_THRESHOLD) {
+            return countOverlaps(matrix, userId, own, 0, own.length);
+        }
+        int chunkSize = (own.length + PARALLEL_CHUNKS - 1) / PARALLEL_CHUNKS;
+        return IntStream.range(0, (own.length + chunkSize - 1) / chunkSize)
+                .parallel()
+                .mapToObj(chunk -> countOverlaps(matrix, userId, own, chunk * chunkSize,
+                        Math.min(own.length, (chunk + 1) * chunkSize)))
+                .reduce(LikeMatrix::merge)
+                .orElseGet(HashMap::new);
+    }
+
+    private static Map<Integer, Integer> countOverlaps(State matrix, int userId, int[] own, int from, int to) {
+        Map<Integer, Integer> overlaps = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            for (int otherId : audience(matrix, own[i])) {
+                if (otherId != userId) {
+                    overlaps.merge(otherId, 1, Integer::sum);
+                }
+            }
+        }
+        return overlaps;
+    }
+
+    private static int[] audience(State matrix, int filmId) {
+        int[] users = matrix.usersByFilm.getOrDefault(filmId, EMPTY);
+        return users.length > MAX_FILM_AUDIENCE ? EMPTY : users;
+    }
+
+    private static Map<Integer, Integer> merge(Map<Integer, Integer> first, Map<Integer, Integer> second) {
+        Map<Integer, Integer> larger = first.size() >= second.size() ? first : second;
+        Map<Integer, Integer> smaller = larger == first ? second : first;
+        smaller.forEach((id, count) -> larger.merge(id, count, Integer::sum));
+        return larger;
+    }
+
+    // limit лучших записей кучей размера limit, в порядке RANKING
+    private static Map<Integer, Integer> top(Map<Integer, Integer> weights, int limit) {
+        PriorityQueue<Map.Entry<Integer, Integer>> top = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        for (Map.Entry<Integer, Integer> entry : weights.entrySet()) {
+            top.offer(entry);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Map.Entry<Integer, Integer>> ranked = new ArrayList<>(top);
+        ranked.sort(RANKING);
+        Map<Integer, Integer> result = new LinkedHashMap<>();
+        ranked.forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+
+    private static int[] insert(int[] values, int value) {
+        if (values == null) {
+            return new int[]{value};
+        }
+        int index = Arrays.binarySearch(values, value);
+        if (index >= 0) {
+            return values;
+        }
+        int position = -index - 1;
+        int[] copy = new int[values.length + 1];
+        System.arraycopy(values, 0, copy, 0, position);
+        copy[position] = value;
+        System.arraycopy(values, position, copy, position + 1, values.length - position);
+        return copy;
+    }
+
+    private static int[] delete(int[] values, int value) {
+        int index = Arrays.binarySearch(values, value);
+        if (index < 0) {
+            return values;
+        }
+        if (values.length == 1) {
+            return null;
+        }
+        int[] copy = new int[values.length - 1];
+        System.arraycopy(values, 0, copy, 0, index);
+        System.arraycopy(values, index + 1, copy, index, values.length - index - 1);
+        return copy;
+    }
+
+    private void change(Consumer<State> action) {
+        Lock lock = publishLock.readLock();
+        lock.lock();
+        try {
+            action.accept(state);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(action);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void withWriteLock(Runnable action) {
+        Lock lock = publishLock.writeLock();
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class State {
+        private final ConcurrentHashMap<Integer, int[]> filmsByUser = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer, int[]> usersByFilm = new ConcurrentHashMap<>();
+    }
+
+    // растущий массив int для построения матрицы без упаковки в Integer
+    private static class IntArrayBuilder {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toSortedArray() {
+            int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
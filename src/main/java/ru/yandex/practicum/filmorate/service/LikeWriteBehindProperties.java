@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// настройки отложенной записи лайков (filmorate.likes.write-behind.*)
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.likes.write-behind")
+public class LikeWriteBehindProperties {
+    // false - каждый лайк сразу пишется в хранилище
+    private boolean enabled;
+    // столько ожидающих пар (фильм, пользователь) запускают сброс, не дожидаясь времени
+    private int maxBatchSize = 1000;
+    // сколько миллисекунд лайк может ждать записи; столько же он может быть не виден в популярных и в БД
+    private long maxStalenessMs = 500;
+    private Durability durability = Durability.MEMORY;
+    private String journalPath = "./db/likes.journal";
+
+    public enum Durability {
+        // только в памяти: при остановке сбрасываются, при падении процесса теряются
+        MEMORY,
+        // журнал в файле без fsync: переживает падение процесса, но не отключение питания
+        JOURNAL,
+        // журнал с fsync после каждого события
+        JOURNAL_FSYNC
+    }
+}
@@ -0,0 +1,219 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// отложенная запись лайков: события копятся в памяти и сбрасываются в хранилище пачкой, когда их набралось
+// maxBatchSize или самое старое ждет дольше maxStaleness. Для пары (фильм, пользователь) хранится только
+// последнее событие, поэтому лайк и его отмена внутри одной пачки схлопываются в одно идемпотентное удаление.
+// Сброс выполняет единственный фоновый поток, пачки применяются строго по очереди
+@Slf4j
+public class LikeWriteBuffer implements Closeable {
+    private static final int LOCK_STRIPES = 64;
+    // не чаще этого проверяется возраст самого старого события
+    private static final long MIN_TICK_MS = 5;
+    private static final long NO_PENDING = 0;
+
+    private final int maxBatchSize;
+    private final long maxStalenessNanos;
+    private final LikeJournal journal;
+    private final Consumer<Batch> flusher;
+    private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+    // добавление событий идет под чтением и не мешает друг другу, подмена карты при сбросе - под записью
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final AtomicLong oldestPendingNanos = new AtomicLong(NO_PENDING);
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService executor;
+    private volatile ConcurrentHashMap<Long, Boolean> pending = new ConcurrentHashMap<>();
+
+    // journal == null - события только в памяти и теряются при падении процесса (при остановке сбрасываются)
+    public LikeWriteBuffer(int maxBatchSize, long maxStalenessMs, LikeJournal journal, Consumer<Batch> flusher) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMs);
+        this.journal = journal;
+        this.flusher = flusher;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (journal != null) {
+            journal.getRecovered().forEach(event -> put(event.getFilmId(), event.getUserId(), event.isLike()));
+        }
+        long tickMs = Math.max(MIN_TICK_MS, maxStalenessMs / 4);
+        executor.scheduleWithFixedDelay(this::flushIfStale, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void like(int filmId, int userId) {
+        enqueue(filmId, userId, true);
+    }
+
+    public void dislike(int filmId, int userId) {
+        enqueue(filmId, userId, false);
+    }
+
+    // число пар (фильм, пользователь), ожидающих записи
+    public int size() {
+        return pending.size();
+    }
+
+    // сброс всего накопленного с ожиданием записи, в фоновом потоке - чтобы не обгонять уже идущий сброс
+    public void flushNow() {
+        try {
+            executor.submit(this::flush).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Не удалось сбросить отложенные лайки", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushNow();
+        executor.shutdown();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void enqueue(int filmId, int userId, boolean like) {
+        swapLock.readLock().lock();
+        try {
+            // журнал и карта меняются под блокировкой пары, чтобы порядок событий в них совпадал
+            locks.withLock(31 * filmId + userId, () -> {
+                if (journal != null) {
+                    journal.append(new Event(filmId, userId, like));
+                }
+                put(filmId, userId, like);
+                return null;
+            });
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if (pending.size() >= maxBatchSize && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    private void put(int filmId, int userId, boolean like) {
+        pending.put(key(filmId, userId), like);
+        oldestPendingNanos.compareAndSet(NO_PENDING, System.nanoTime());
+    }
+
+    // проверка идет каждую четверть maxStaleness, сброс - с половины, так что событие ждет не дольше
+    // трех четвертей maxStaleness плюс время самой записи
+    private void flushIfStale() {
+        long oldest = oldestPendingNanos.get();
+        if (oldest == NO_PENDING || System.nanoTime() - oldest < maxStalenessNanos / 2) {
+            return;
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // исключение остановило бы периодическую задачу
+            log.error("Ошибка при сбросе отложенных лайков", e);
+        }
+    }
+
+    // выполняется только в фоновом потоке
+    private void flush() {
+        flushScheduled.set(false);
+        Map<Long, Boolean> drained;
+        swapLock.writeLock().lock();
+        try {
+            drained = pending;
+            if (drained.isEmpty()) {
+                return;
+            }
+            pending = new ConcurrentHashMap<>();
+            oldestPendingNanos.set(NO_PENDING);
+            if (journal != null) {
+                journal.rotate();
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось подготовить сброс отложенных лайков", e);
+            return;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        Batch batch = new Batch(new ArrayList<>(), new ArrayList<>());
+        drained.forEach((key, like) -> (like ? batch.getLikes() : batch.getDislikes())
+                .add(new int[]{filmId(key), userId(key)}));
+        try {
+            flusher.accept(batch);
+            log.debug("Сброшено лайков: {}, отмен: {}", batch.getLikes().size(), batch.getDislikes().size());
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать {} отложенных событий лайков, они будут повторены", drained.size(), e);
+            requeue(drained);
+        }
+        if (journal != null) {
+            journal.commitRotated();
+        }
+    }
+
+    // события неудачной пачки возвращаются в буфер, если за это время по той же паре не пришло новое
+    private void requeue(Map<Long, Boolean> drained) {
+        drained.forEach((key, like) -> enqueueIfAbsent(filmId(key), userId(key), like));
+    }
+
+    private void enqueueIfAbsent(int filmId, int userId, boolean like) {
+        swapLock.readLock().lock();
+        try {
+            locks.withLock(31 * filmId + userId, () -> {
+                if (!pending.containsKey(key(filmId, userId))) {
+                    if (journal != null) {
+                        journal.append(new Event(filmId, userId, like));
+                    }
+                    put(filmId, userId, like);
+                }
+                return null;
+            });
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static long key(int filmId, int userId) {
+        return ((long) filmId << 32) | (userId & 0xFFFFFFFFL);
+    }
+
+    private static int filmId(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int userId(long key) {
+        return (int) key;
+    }
+
+    @Value
+    public static class Event {
+        int filmId;
+        int userId;
+        boolean like;
+    }
+
+    // пары (id фильма, id пользователя), которые надо добавить и удалить; пара встречается в пачке один раз
+    @Value
+    public static class Batch {
+        List<int[]> likes;
+        List<int[]> dislikes;
+    }
+}
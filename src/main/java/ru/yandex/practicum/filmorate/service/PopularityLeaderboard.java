@@ -0,0 +1,235 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+// рейтинг фильмов по числу лайков, обновляемый на каждом лайке за O(log n).
+// Порядок: больше лайков выше, при равенстве - меньший id выше
+public class PopularityLeaderboard {
+    private static final int RECHECK_ROUNDS = 3;
+
+    private volatile State state = new State();
+    private volatile boolean ready;
+    // изменения держат блокировку на чтение, подмена состояния после перестроения - на запись
+    private final ReentrantReadWriteLock publishLock = new ReentrantReadWriteLock();
+    // фильмы, измененные во время перестроения; null, пока перестроения нет
+    private Set<Integer> changedDuringRebuild;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild(Map<Integer, Integer> counts) {
+        rebuild(() -> counts, filmIds -> counts);
+    }
+
+    // новый рейтинг строится в стороне от живого и подменяет его целиком, поэтому top() не видит пустого
+    // или наполовину заполненного рейтинга. Фильмы, измененные во время загрузки снимка, до подмены берут
+    // значение из живого рейтинга, а после нее - сохраненные счетчики (storedCounts): лайк, записанный в базу
+    // до снимка, но дошедший до рейтинга позже, иначе учелся бы дважды. Фильм, измененный и во время
+    // перечитывания, перечитывается снова; если он меняется дольше RECHECK_ROUNDS раундов, остается живое
+    // значение, а возможное расхождение исправляет ночная сверка счетчиков
+    public synchronized void rebuild(Supplier<Map<Integer, Integer>> counts,
+                                     Function<Collection<Integer>, Map<Integer, Integer>> storedCounts) {
+        withWriteLock(() -> changedDuringRebuild = ConcurrentHashMap.newKeySet());
+        try {
+            State fresh = new State();
+            counts.get().forEach(fresh::set);
+            withWriteLock(() -> {
+                State live = state;
+                for (int filmId : changedDuringRebuild) {
+                    Integer count = live.likeCounts.get(filmId);
+                    if (count == null) {
+                        fresh.remove(filmId);
+                    } else {
+                        fresh.set(filmId, count);
+                    }
+                }
+                state = fresh;
+                ready = true;
+            });
+            for (int round = 0; round < RECHECK_ROUNDS; round++) {
+                Set<Integer> recheck = startRecheckRound();
+                if (recheck.isEmpty()) {
+                    break;
+                }
+                Map<Integer, Integer> stored = storedCounts.apply(recheck);
+                // счетчик из базы ставится, только если фильм не менялся, пока его читали
+                withWriteLock(() -> recheck.stream()
+                        .filter(filmId -> !changedDuringRebuild.contains(filmId))
+                        .forEach(filmId -> {
+                            Integer count = stored.get(filmId);
+                            if (count == null) {
+                                state.remove(filmId);
+                            } else {
+                                state.set(filmId, count);
+                            }
+                        }));
+            }
+        } finally {
+            withWriteLock(() -> changedDuringRebuild = null);
+        }
+    }
+
+    // фильмы, измененные с начала прошлого раунда; изменения этого раунда копятся в новом множестве
+    private Set<Integer> startRecheckRound() {
+        Lock lock = publishLock.writeLock();
+        lock.lock();
+        try {
+            Set<Integer> changed = changedDuringRebuild;
+            changedDuringRebuild = ConcurrentHashMap.newKeySet();
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void add(int filmId) {
+        change(filmId, State::add);
+    }
+
+    public void remove(int filmId) {
+        change(filmId, State::remove);
+    }
+
+    public void increment(int filmId) {
+        change(filmId, (live, id) -> live.update(id, 1));
+    }
+
+    public void decrement(int filmId) {
+        change(filmId, (live, id) -> live.update(id, -1));
+    }
+
+    public void set(int filmId, int count) {
+        change(filmId, (live, id) -> live.set(id, count));
+    }
+
+    public int getLikeCount(int filmId) {
+        return state.likeCounts.getOrDefault(filmId, 0);
+    }
+
+    public int size() {
+        return state.likeCounts.size();
+    }
+
+    // id самых популярных фильмов. Во время переноса записи фильм может кратко встретиться дважды
+    // (со старым и новым счетчиком), поэтому повторы отбрасываются
+    public List<Integer> top(int count) {
+        State current = state;
+        List<Integer> ids = new ArrayList<>(Math.min(count, current.likeCounts.size()));
+        Set<Integer> seen = new HashSet<>();
+        for (Entry entry : current.ranking) {
+            if (ids.size() >= count) {
+                break;
+            }
+            if (seen.add(entry.filmId)) {
+                ids.add(entry.filmId);
+            }
+        }
+        return ids;
+    }
+
+    private void change(int filmId, ObjIntConsumer<State> action) {
+        Lock lock = publishLock.readLock();
+        lock.lock();
+        try {
+            action.accept(state, filmId);
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(filmId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void withWriteLock(Runnable action) {
+        Lock lock = publishLock.writeLock();
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class State {
+        private final ConcurrentHashMap<Integer, Integer> likeCounts = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+
+        private void add(int filmId) {
+            likeCounts.computeIfAbsent(filmId, id -> {
+                ranking.add(new Entry(0, id));
+                return 0;
+            });
+        }
+
+        private void remove(int filmId) {
+            likeCounts.computeIfPresent(filmId, (id, count) -> {
+                ranking.remove(new Entry(count, id));
+                return null;
+            });
+        }
+
+        private void set(int filmId, int count) {
+            likeCounts.compute(filmId, (id, old) -> move(id, old, count));
+        }
+
+        private void update(int filmId, int delta) {
+            likeCounts.compute(filmId, (id, old) -> move(id, old, Math.max(0, (old == null ? 0 : old) + delta)));
+        }
+
+        // вызывается под блокировкой ключа в ConcurrentHashMap.compute, поэтому изменения одного фильма не гоняются.
+        // Сначала добавляется новая запись, потом удаляется старая - фильм не пропадает из выдачи top()
+        private Integer move(int filmId, Integer oldCount, int newCount) {
+            ranking.add(new Entry(newCount, filmId));
+            if (oldCount != null && oldCount != newCount) {
+                ranking.remove(new Entry(oldCount, filmId));
+            }
+            return newCount;
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final int likeCount;
+        private final int filmId;
+
+        private Entry(int likeCount, int filmId) {
+            this.likeCount = likeCount;
+            this.filmId = filmId;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byLikes = Integer.compare(other.likeCount, likeCount);
+            return byLikes != 0 ? byLikes : Integer.compare(filmId, other.filmId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return likeCount == entry.likeCount && filmId == entry.filmId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * likeCount + filmId;
+        }
+    }
+}
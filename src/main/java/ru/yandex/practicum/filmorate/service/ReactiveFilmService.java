@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.ReactiveFilmStorage;
+
+// неблокирующее чтение фильмов для /reactive/films. Популярные считаются по like_count в БД,
+// без рейтинга в памяти FilmService, поэтому отложенные лайки видны здесь только после сброса
+@Service
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+public class ReactiveFilmService {
+    private final ReactiveFilmStorage filmStorage;
+
+    @Autowired
+    public ReactiveFilmService(ReactiveFilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    public Mono<Film> get(int id) {
+        return filmStorage.get(id);
+    }
+
+    public Flux<Film> findAll() {
+        return filmStorage.findAll();
+    }
+
+    public Flux<Film> getPopularFilms(int count) {
+        return filmStorage.getPopularFilms(count);
+    }
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ReactiveUserStorage;
+
+// неблокирующее чтение пользователей для /reactive/users
+@Service
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+public class ReactiveUserService {
+    private final ReactiveUserStorage userStorage;
+
+    @Autowired
+    public ReactiveUserService(ReactiveUserStorage userStorage) {
+        this.userStorage = userStorage;
+    }
+
+    public Mono<User> get(int id) {
+        return userStorage.get(id);
+    }
+
+    public Flux<User> findAll() {
+        return userStorage.findAll();
+    }
+
+    public Flux<User> getCommonFriends(int userId, int otherId) {
+        return userStorage.getCommonFriends(userId, otherId);
+    }
+
+    public Flux<User> getUserFriends(int userId) {
+        return userStorage.getUserFriends(userId);
+    }
+}
@@ -1,20 +1,24 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class UserService {
     private final UserStorage userStorage;
+    private final FilmService filmService;
 
     @Autowired
-    public UserService(@Qualifier("UserDbStorage") UserStorage userStorage) {
+    public UserService(UserStorage userStorage, FilmService filmService) {
         this.userStorage = userStorage;
+        this.filmService = filmService;
     }
 
     public User create(User user) {
@@ -25,18 +29,33 @@ public class UserService {
         return userStorage.update(user);
     }
 
+    // вместе с пользователем удаляются его лайки, поэтому меняются рейтинг и матрица лайков
     public void delete(User user) {
+        Set<Integer> likedFilmIds = filmService.getLikedFilmIds(user.getId());
         userStorage.delete(user);
+        filmService.removeUserLikes(user.getId(), likedFilmIds);
     }
 
     public User get(int id) {
         return userStorage.get(id);
     }
 
+    public EntityVersion getVersion(int id) {
+        return userStorage.getVersion(id);
+    }
+
     public List<User> findAll() {
         return userStorage.findAll();
     }
 
+    public void streamAll(Consumer<User> consumer) {
+        userStorage.streamAll(consumer);
+    }
+
+    public List<User> findPage(int afterId, int limit) {
+        return userStorage.findPage(afterId, ValidationService.checkPageLimit(limit));
+    }
+
     public void addFriend(int userId, int friendId) {
         userStorage.addFriend(userId, friendId);
     }
@@ -52,4 +71,10 @@ public class UserService {
     public List<User> getUserFriends(int userId) {
         return userStorage.getUserFriends(userId);
     }
+
+    // возможные друзья по числу общих друзей
+    public List<User> getFriendSuggestions(int userId, int limit) {
+        userStorage.getWithoutFriends(userId);
+        return userStorage.getFriendSuggestions(userId, ValidationService.checkPageLimit(limit));
+    }
 }
@@ -11,6 +11,17 @@ import java.time.LocalDate;
 
 @Slf4j
 public final class ValidationService {
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // возвращает размер страницы, ограниченный MAX_PAGE_SIZE
+    public static int checkPageLimit(int limit) {
+        if (limit <= 0) {
+            log.warn("Размер страницы должен быть положительным");
+            throw new ValidationException("Размер страницы должен быть положительным");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
     public static void check(User user) {
         if (!StringUtils.hasLength(user.getEmail())) {
             log.warn("Электронная почта не может быть пустой");
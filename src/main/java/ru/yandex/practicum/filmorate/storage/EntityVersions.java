@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// версии сущностей для хранилищ в памяти - то же, что столбцы version и updated_at в базе
+public class EntityVersions {
+    private final Map<Integer, EntityVersion> versions = new ConcurrentHashMap<>();
+
+    public void create(int id) {
+        versions.put(id, new EntityVersion(0, Instant.now()));
+    }
+
+    // увеличивает версию существующей сущности, для удаленной ничего не делает
+    public void touch(int id) {
+        versions.computeIfPresent(id, (key, old) -> new EntityVersion(old.getVersion() + 1, Instant.now()));
+    }
+
+    // null, если сущности нет
+    public EntityVersion get(int id) {
+        return versions.get(id);
+    }
+
+    public void remove(int id) {
+        versions.remove(id);
+    }
+}
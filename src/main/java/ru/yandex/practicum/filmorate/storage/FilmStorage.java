@@ -1,23 +1,41 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Film create(Film film);
 
+    List<Film> createAll(List<Film> films);
+
     Film update(Film film);
 
     void delete(Film film);
 
     List<Film> findAll();
 
+    List<Film> findPage(int afterId, int limit);
+
+    void streamAll(Consumer<Film> consumer);
+
     Film get(int id);
 
+    EntityVersion getVersion(int id);
+
+    List<Film> getByIds(List<Integer> ids);
+
+    Set<Integer> findExistingIds(Collection<Integer> ids);
+
     Genre getGenre(int id);
 
     List<Genre> findAllGenres();
@@ -26,7 +44,27 @@ public interface FilmStorage {
 
     List<Mpa> findAllMpa();
 
-    void likeFilm(Film film, User user);
+    void refreshReferenceData();
+
+    void invalidateReferenceData();
+
+    boolean likeFilm(Film film, User user);
+
+    boolean dislikeFilm(Film film, User user);
+
+    int addLikes(List<int[]> likes);
+
+    int removeLikes(List<int[]> likes);
+
+    List<Film> getPopularFilms(int count);
+
+    Map<Integer, Integer> getLikeCounts();
+
+    Map<Integer, Integer> getLikeCounts(Collection<Integer> filmIds);
+
+    void streamLikes(BiConsumer<Integer, Integer> consumer);
+
+    Set<Integer> getLikedFilmIds(int userId);
 
-    void dislikeFilm(Film film, User user);
+    int reconcileLikeCounts();
 }
@@ -0,0 +1,237 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// индекс друзей в памяти: для каждого пользователя сжатая битовая карта id тех, кого он добавил в друзья.
+// Общие друзья - пересечение двух карт. Карты не изменяются после публикации, запись заменяет карту копией,
+// поэтому чтение идет без блокировок
+public class FriendIndex {
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+    // друзей больше порога - друзья друзей считаются параллельно в ForkJoinPool
+    private static final int PARALLEL_THRESHOLD = 256;
+    // больше общих друзей - выше, при равенстве меньший id выше
+    private static final Comparator<Map.Entry<Integer, Integer>> RANKING =
+            Map.Entry.<Integer, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private volatile ConcurrentHashMap<Integer, RoaringBitmap> friendsByUser = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    // изменения держат блокировку на чтение, подмена карты после перестроения - на запись
+    private final ReentrantReadWriteLock publishLock = new ReentrantReadWriteLock();
+    // изменения, сделанные во время перестроения; null, пока перестроения нет
+    private Queue<Consumer<Map<Integer, RoaringBitmap>>> changesDuringRebuild;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild(Map<Integer, RoaringBitmap> friends) {
+        rebuild(() -> friends);
+    }
+
+    // новая карта строится в стороне и подменяет живую целиком, поэтому чтение не видит пустого или
+    // наполовину заполненного индекса. Изменения, сделанные с начала чтения снимка, повторяются на новой карте
+    // перед подменой: добавление и удаление друга идемпотентны, так что повтор уже учтенного в снимке безвреден
+    public synchronized void rebuild(Supplier<Map<Integer, RoaringBitmap>> friends) {
+        Queue<Consumer<Map<Integer, RoaringBitmap>>> changes = new ConcurrentLinkedQueue<>();
+        withWriteLock(() -> changesDuringRebuild = changes);
+        try {
+            ConcurrentHashMap<Integer, RoaringBitmap> fresh = new ConcurrentHashMap<>();
+            friends.get().forEach((userId, bitmap) -> {
+                bitmap.runOptimize();
+                fresh.put(userId, bitmap);
+            });
+            withWriteLock(() -> {
+                changes.forEach(change -> change.accept(fresh));
+                friendsByUser = fresh;
+                ready = true;
+            });
+        } finally {
+            withWriteLock(() -> changesDuringRebuild = null);
+        }
+    }
+
+    public void add(int userId, int friendId) {
+        change(friends -> add(friends, userId, friendId));
+    }
+
+    public void remove(int userId, int friendId) {
+        change(friends -> remove(friends, userId, friendId));
+    }
+
+    // удаление пользователя убирает его карту и его id из карт остальных пользователей
+    public void removeUser(int userId) {
+        change(friends -> {
+            friends.remove(userId);
+            for (Integer id : friends.keySet()) {
+                remove(friends, id, userId);
+            }
+        });
+    }
+
+    public boolean contains(int userId, int friendId) {
+        return friendsByUser.getOrDefault(userId, EMPTY).contains(friendId);
+    }
+
+    // id друзей пользователя по возрастанию
+    public int[] friends(int userId) {
+        return friendsByUser.getOrDefault(userId, EMPTY).toArray();
+    }
+
+    // id общих друзей двух пользователей по возрастанию
+    public int[] common(int userId, int otherId) {
+        Map<Integer, RoaringBitmap> current = friendsByUser;
+        RoaringBitmap first = current.get(userId);
+        RoaringBitmap second = current.get(otherId);
+        if (first == null || second == null) {
+            return new int[0];
+        }
+        return RoaringBitmap.and(first, second).toArray();
+    }
+
+    // рекомендации друзей: пользователи, которых добавили в друзья друзья пользователя, но не он сам,
+    // по числу общих друзей. Лучшие limit отбираются кучей размера limit без сортировки всех кандидатов
+    public int[] suggestions(int userId, int limit) {
+        Map<Integer, RoaringBitmap> current = friendsByUser;
+        RoaringBitmap friends = current.getOrDefault(userId, EMPTY);
+        int[] friendIds = friends.toArray();
+        CountTask task = new CountTask(current, userId, friends, friendIds, 0, friendIds.length);
+        Map<Integer, Integer> counts = friendIds.length > PARALLEL_THRESHOLD
+                ? ForkJoinPool.commonPool().invoke(task)
+                : task.compute();
+
+        PriorityQueue<Map.Entry<Integer, Integer>> top = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        for (Map.Entry<Integer, Integer> candidate : counts.entrySet()) {
+            top.offer(candidate);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Map.Entry<Integer, Integer>> ranked = new ArrayList<>(top);
+        ranked.sort(RANKING);
+        return ranked.stream().mapToInt(Map.Entry::getKey).toArray();
+    }
+
+    public int size() {
+        return friendsByUser.size();
+    }
+
+    // занимаемая битовыми картами память, без учета накладных расходов самой хеш-таблицы
+    public long getSizeInBytes() {
+        long bytes = 0;
+        for (RoaringBitmap bitmap : friendsByUser.values()) {
+            bytes += bitmap.getLongSizeInBytes();
+        }
+        return bytes;
+    }
+
+    private void change(Consumer<Map<Integer, RoaringBitmap>> action) {
+        Lock lock = publishLock.readLock();
+        lock.lock();
+        try {
+            action.accept(friendsByUser);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(action);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void withWriteLock(Runnable action) {
+        Lock lock = publishLock.writeLock();
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void add(Map<Integer, RoaringBitmap> friends, int userId, int friendId) {
+        friends.compute(userId, (id, old) -> {
+            if (old != null && old.contains(friendId)) {
+                return old;
+            }
+            RoaringBitmap copy = old == null ? new RoaringBitmap() : old.clone();
+            copy.add(friendId);
+            return copy;
+        });
+    }
+
+    private static void remove(Map<Integer, RoaringBitmap> friends, int userId, int friendId) {
+        friends.computeIfPresent(userId, (id, old) -> {
+            if (!old.contains(friendId)) {
+                return old;
+            }
+            RoaringBitmap copy = old.clone();
+            copy.remove(friendId);
+            return copy.isEmpty() ? null : copy;
+        });
+    }
+
+    // счетчики общих друзей по кандидатам для друзей friendIds[from, to)
+    private static class CountTask extends RecursiveTask<Map<Integer, Integer>> {
+        private final Map<Integer, RoaringBitmap> friendsByUser;
+        private final int userId;
+        private final RoaringBitmap friends;
+        private final int[] friendIds;
+        private final int from;
+        private final int to;
+
+        CountTask(Map<Integer, RoaringBitmap> friendsByUser, int userId, RoaringBitmap friends, int[] friendIds,
+                  int from, int to) {
+            this.friendsByUser = friendsByUser;
+            this.userId = userId;
+            this.friends = friends;
+            this.friendIds = friendIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Integer, Integer> compute() {
+            if (to - from > PARALLEL_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                CountTask left = new CountTask(friendsByUser, userId, friends, friendIds, from, middle);
+                left.fork();
+                Map<Integer, Integer> right = new CountTask(friendsByUser, userId, friends, friendIds, middle, to).compute();
+                return merge(left.join(), right);
+            }
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                PeekableIntIterator candidates = friendsByUser.getOrDefault(friendIds[i], EMPTY).getIntIterator();
+                while (candidates.hasNext()) {
+                    int candidate = candidates.next();
+                    if (candidate != userId && !friends.contains(candidate)) {
+                        counts.merge(candidate, 1, Integer::sum);
+                    }
+                }
+            }
+            return counts;
+        }
+
+        private Map<Integer, Integer> merge(Map<Integer, Integer> first, Map<Integer, Integer> second) {
+            Map<Integer, Integer> larger = first.size() >= second.size() ? first : second;
+            Map<Integer, Integer> smaller = larger == first ? second : first;
+            smaller.forEach((candidate, count) -> larger.merge(candidate, count, Integer::sum));
+            return larger;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.Film;
+
+// неблокирующее чтение фильмов: операции чтения FilmStorage, результат отдается по мере чтения строк
+public interface ReactiveFilmStorage {
+    Mono<Film> get(int id);
+
+    Flux<Film> findAll();
+
+    Flux<Film> getPopularFilms(int count);
+}
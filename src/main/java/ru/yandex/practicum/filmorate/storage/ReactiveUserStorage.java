@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.User;
+
+// неблокирующее чтение пользователей: операции чтения UserStorage, результат отдается по мере чтения строк
+public interface ReactiveUserStorage {
+    Mono<User> get(int id);
+
+    Flux<User> findAll();
+
+    Flux<User> getCommonFriends(int userId, int otherId);
+
+    Flux<User> getUserFriends(int userId);
+}
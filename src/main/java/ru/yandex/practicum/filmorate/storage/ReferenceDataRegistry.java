@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// справочники жанров и рейтингов MPA в памяти. Меняются раз в год, поэтому загружаются целиком
+// в массивы, индексированные id: поиск O(1) без обращения к БД и без аллокаций.
+// Загрузка идет под ReentrantLock, а не synchronized: виртуальный поток, ждущий ответа БД внутри
+// synchronized, занимает поток-носитель
+public class ReferenceDataRegistry {
+    private final Supplier<List<Genre>> genreLoader;
+    private final Supplier<List<Mpa>> mpaLoader;
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+
+    public ReferenceDataRegistry(Supplier<List<Genre>> genreLoader, Supplier<List<Mpa>> mpaLoader) {
+        this.genreLoader = genreLoader;
+        this.mpaLoader = mpaLoader;
+    }
+
+    // null, если жанра с таким id нет
+    public Genre getGenre(int id) {
+        Genre[] genres = snapshot().genresById;
+        return id >= 0 && id < genres.length ? genres[id] : null;
+    }
+
+    public List<Genre> findAllGenres() {
+        return snapshot().genres;
+    }
+
+    // null, если рейтинга с таким id нет
+    public Mpa getMpa(int id) {
+        Mpa[] mpa = snapshot().mpaById;
+        return id >= 0 && id < mpa.length ? mpa[id] : null;
+    }
+
+    public List<Mpa> findAllMpa() {
+        return snapshot().mpa;
+    }
+
+    // немедленно перечитывает справочники из источника
+    public void refresh() {
+        loadLock.lock();
+        try {
+            snapshot = load();
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    // сбрасывает справочники, они будут перечитаны при следующем обращении
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            loadLock.lock();
+            try {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    snapshot = current;
+                }
+            } finally {
+                loadLock.unlock();
+            }
+        }
+        return current;
+    }
+
+    private Snapshot load() {
+        List<Genre> genres = new ArrayList<>(genreLoader.get());
+        genres.sort(Comparator.comparingInt(Genre::getId));
+        List<Mpa> mpa = new ArrayList<>(mpaLoader.get());
+        mpa.sort(Comparator.comparingInt(Mpa::getId));
+
+        Genre[] genresById = new Genre[genres.isEmpty() ? 0 : genres.get(genres.size() - 1).getId() + 1];
+        genres.forEach(g -> genresById[g.getId()] = g);
+        Mpa[] mpaById = new Mpa[mpa.isEmpty() ? 0 : mpa.get(mpa.size() - 1).getId() + 1];
+        mpa.forEach(m -> mpaById[m.getId()] = m);
+
+        return new Snapshot(genresById, Collections.unmodifiableList(genres), mpaById, Collections.unmodifiableList(mpa));
+    }
+
+    private static final class Snapshot {
+        private final Genre[] genresById;
+        private final List<Genre> genres;
+        private final Mpa[] mpaById;
+        private final List<Mpa> mpa;
+
+        private Snapshot(Genre[] genresById, List<Genre> genres, Mpa[] mpaById, List<Mpa> mpa) {
+            this.genresById = genresById;
+            this.genres = genres;
+            this.mpaById = mpaById;
+            this.mpa = mpa;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.storage;
+
+// списки id хранилища передают в SQL через IN порциями не больше IN_CHUNK_SIZE. Тот же размер использует
+// подсчет JDBC-выражений: выражение с полной порцией может продолжиться следующей порцией того же запроса
+public final class SqlChunks {
+    public static final int IN_CHUNK_SIZE = 500;
+
+    private SqlChunks() {
+    }
+}
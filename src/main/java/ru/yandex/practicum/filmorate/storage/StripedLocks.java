@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// фиксированный набор блокировок, выбираемых по id: изменения разных сущностей почти никогда не ждут друг друга,
+// а память не растет с числом сущностей
+public class StripedLocks {
+    private final ReentrantLock[] locks;
+
+    public StripedLocks(int stripes) {
+        locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(int id, Supplier<T> action) {
+        ReentrantLock lock = locks[stripe(id)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // блокировки двух id берутся в порядке номеров полос, чтобы встречные операции не взаимоблокировались
+    public <T> T withLocks(int firstId, int secondId, Supplier<T> action) {
+        int first = Math.min(stripe(firstId), stripe(secondId));
+        int second = Math.max(stripe(firstId), stripe(secondId));
+        locks[first].lock();
+        try {
+            if (second == first) {
+                return action.get();
+            }
+            locks[second].lock();
+            try {
+                return action.get();
+            } finally {
+                locks[second].unlock();
+            }
+        } finally {
+            locks[first].unlock();
+        }
+    }
+
+    private int stripe(int id) {
+        return Math.floorMod(id, locks.length);
+    }
+}
@@ -1,25 +1,45 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     User create(User user);
 
+    List<User> createAll(List<User> users);
+
     User update(User user);
 
     void delete(User user);
 
     List<User> findAll();
 
+    List<User> findPage(int afterId, int limit);
+
+    void streamAll(Consumer<User> consumer);
+
     User get(int id);
 
-    void addFriend(int userId, int friendId);
+    EntityVersion getVersion(int id);
+
+    User getWithoutFriends(int id);
 
-    void removeFriend(int userId, int friendId);
+    Set<Integer> findExistingIds(Collection<Integer> ids);
+
+    boolean addFriend(int userId, int friendId);
+
+    boolean removeFriend(int userId, int friendId);
+
+    int addFriendships(List<int[]> friendships);
 
     List<User> getCommonFriends(int userId, int otherId);
 
     List<User> getUserFriends(int userId);
+
+    List<User> getFriendSuggestions(int userId, int limit);
 }
@@ -2,76 +2,162 @@ package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.GenreNotFoundException;
 import ru.yandex.practicum.filmorate.exception.MpaNotFoundException;
+import ru.yandex.practicum.filmorate.logging.LogMarkers;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.IntSet;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.ValidationService;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.SqlChunks;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 @Qualifier("FilmDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
 public class FilmDbStorage implements FilmStorage {
+    // вставка лайка, если его еще нет; источник - соединение film и users, поэтому лайк удаленного
+    // фильма или пользователя тоже пропускается. Число измененных строк - 1 для новой строки, 0 для повтора
+    private static final String LIKE_MERGE = "MERGE INTO favorite_films AS ff " +
+            "USING (SELECT f.id AS film_id, u.id AS user_id FROM film AS f, users AS u WHERE f.id = ? AND u.id = ?) AS l " +
+            "ON ff.film_id = l.film_id AND ff.user_id = l.user_id " +
+            "WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (l.film_id, l.user_id)";
+    // любое изменение, видимое в ответе GET /films/{id}, увеличивает версию фильма
+    private static final String VERSION_BUMP = "version = version + 1, updated_at = CURRENT_TIMESTAMP";
+    private static final String FILM_INSERT = "INSERT INTO film(name, release_date, description, duration, rating_id, rate) " +
+            "values (?, ?, ?, ?, ?, ?)";
+    private static final String FILM_SELECT = "SELECT f.id, f.name, f.release_date, f.description, f.duration, f.rate, " +
+            "f.rating_id, r.name AS rating_name " +
+            "FROM film AS f " +
+            "LEFT JOIN rating AS r ON r.id = f.rating_id ";
+    // сколько строк драйвер забирает за раз при потоковой выгрузке
+    private static final int STREAM_FETCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final ReferenceDataRegistry referenceData = new ReferenceDataRegistry(this::queryAllGenres, this::queryAllMpa);
 
     public FilmDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
     @Override
+    @Transactional
     public Film create(Film film) {
         ValidationService.check(film);
 
-        String sqlQuery = "INSERT INTO film(name, release_date, description, duration, rating_id, rate) " +
-                "values (?, ?, ?, ?, ?, ?)";
-
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(connection -> {
-            PreparedStatement stmt = connection.prepareStatement(sqlQuery, new String[]{"id"});
-            stmt.setString(1, film.getName());
-            stmt.setDate(2, Date.valueOf(film.getReleaseDate()));
-            stmt.setString(3, film.getDescription());
-            stmt.setInt(4, film.getDuration());
-            stmt.setInt(5, film.getMpa().getId());
-            stmt.setInt(6, film.getRate());
+            PreparedStatement stmt = connection.prepareStatement(FILM_INSERT, new String[]{"id"});
+            setFilmParameters(stmt, film);
             return stmt;
         }, keyHolder);
 
-        int i = keyHolder.getKey().intValue();
-        film.setId(i);
+        film.setId(keyHolder.getKey().intValue());
+        insertGenres(List.of(film));
+        return film;
+    }
 
-        if (!film.getGenres().isEmpty()) {
-            for (Genre genre : film.getGenres()) {
-                String sqlQueryFilmGenre = "INSERT INTO film_genre(film_id, genre_id) " +
-                        "values (?, ?)";
-                jdbcTemplate.update(sqlQueryFilmGenre, i, genre.getId());
+    // пакетная вставка уже проверенных фильмов: одна пачка INSERT с возвратом ключей и одна пачка жанров
+    @Override
+    @Transactional
+    public List<Film> createAll(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        ConnectionCallback<Void> insert = connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(FILM_INSERT, new String[]{"id"})) {
+                for (Film film : films) {
+                    setFilmParameters(stmt, film);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    for (int i = 0; keys.next(); i++) {
+                        films.get(i).setId(keys.getInt(1));
+                    }
+                }
             }
+            return null;
+        };
+        jdbcTemplate.execute(insert);
+        insertGenres(films);
+        return films;
+    }
+
+    private static void setFilmParameters(PreparedStatement stmt, Film film) throws SQLException {
+        stmt.setString(1, film.getName());
+        stmt.setDate(2, Date.valueOf(film.getReleaseDate()));
+        stmt.setString(3, film.getDescription());
+        stmt.setInt(4, film.getDuration());
+        stmt.setInt(5, film.getMpa().getId());
+        stmt.setInt(6, film.getRate());
+    }
+
+    private void insertGenres(List<Film> films) {
+        List<Object[]> filmGenres = new ArrayList<>();
+        for (Film film : films) {
+            film.getGenres().stream()
+                    .map(Genre::getId)
+                    .distinct()
+                    .sorted()
+                    .forEach(genreId -> filmGenres.add(new Object[]{film.getId(), genreId}));
+        }
+        if (!filmGenres.isEmpty()) {
+            String sqlQueryFilmGenre = "INSERT INTO film_genre(film_id, genre_id) " +
+                    "values (?, ?)";
+            jdbcTemplate.batchUpdate(sqlQueryFilmGenre, filmGenres);
         }
-        return film;
     }
 
+    // id из списка, для которых есть фильм
     @Override
+    public Set<Integer> findExistingIds(Collection<Integer> ids) {
+        Set<Integer> existing = new HashSet<>();
+        List<Integer> distinct = new ArrayList<>(new HashSet<>(ids));
+        for (int from = 0; from < distinct.size(); from += SqlChunks.IN_CHUNK_SIZE) {
+            List<Integer> chunk = distinct.subList(from, Math.min(from + SqlChunks.IN_CHUNK_SIZE, distinct.size()));
+            existing.addAll(jdbcTemplate.queryForList("SELECT id FROM film WHERE id IN (" +
+                    placeholders(chunk.size()) + ")", Integer.class, chunk.toArray()));
+        }
+        return existing;
+    }
+
+    @Override
+    @Transactional
     public Film update(Film film) {
         ValidationService.check(film);
         get(film.getId());
-        String sqlQuery = "UPDATE film SET name = ?, release_date = ?, description = ?, duration = ?, rating_id = ?, rate = ?" +
-                " WHERE id = ?";
+        String sqlQuery = "UPDATE film SET name = ?, release_date = ?, description = ?, duration = ?, rating_id = ?, rate = ?, " +
+                VERSION_BUMP + " WHERE id = ?";
         try {
             getMpa(film.getMpa().getId());
         } catch (MpaNotFoundException e) {
@@ -88,32 +174,41 @@ public class FilmDbStorage implements FilmStorage {
                 film.getId()
         );
 
-        Set<Integer> genresIdsInDb = getAllGenresByFilmId(film.getId()).stream().map(Genre::getId).collect(Collectors.toSet());
-        Set<Integer> genresIdsInMemory = film.getGenres().stream().map(Genre::getId).collect(Collectors.toSet());
-
-        Set<Integer> commonElements = genresIdsInDb.stream()
-                .distinct()
-                .filter(genresIdsInMemory::contains)
-                .collect(Collectors.toSet());
-
-        Set<Integer> genresIdsForRemove = genresIdsInDb.stream().filter(g -> !commonElements.contains(g)).collect(Collectors.toSet());
-        Set<Integer> genresIdsForInsert = genresIdsInMemory.stream().filter(g -> !commonElements.contains(g)).collect(Collectors.toSet());
-
-        genresIdsForRemove.forEach(g -> this.deleteGenreFromFilm(film.getId(), g));
-        genresIdsForInsert.forEach(g -> {
-            try {
-                getGenre(g);
-                String sqlFilmGenre = "INSERT INTO film_genre(film_id, genre_id) " +
-                        "values (?, ?)";
-                jdbcTemplate.update(sqlFilmGenre, film.getId(), g);
-            } catch (GenreNotFoundException e) {
-                log.debug("Жанр с id = {} не существует", g);
-            }
-        });
+        replaceGenres(film.getId(), film.getGenres());
 
         return get(film.getId());
     }
 
+    // приводит жанры фильма к переданному набору за два обращения к БД независимо от числа жанров:
+    // одним DELETE убираются лишние, одним пакетом добавляются недостающие
+    private void replaceGenres(int filmId, Set<Genre> genres) {
+        List<Integer> genreIds = new ArrayList<>();
+        for (Integer genreId : genres.stream().map(Genre::getId).distinct().sorted().collect(Collectors.toList())) {
+            if (referenceData.getGenre(genreId) != null) {
+                genreIds.add(genreId);
+            } else {
+                log.debug("Жанр с id = {} не существует", genreId);
+            }
+        }
+
+        if (genreIds.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM film_genre WHERE film_id = ?", filmId);
+            return;
+        }
+        List<Object> deleteArgs = new ArrayList<>(genreIds.size() + 1);
+        deleteArgs.add(filmId);
+        deleteArgs.addAll(genreIds);
+        jdbcTemplate.update("DELETE FROM film_genre WHERE film_id = ? AND genre_id NOT IN (" +
+                placeholders(genreIds.size()) + ")", deleteArgs.toArray());
+
+        String insertSql = "INSERT INTO film_genre(film_id, genre_id) " +
+                "SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM film_genre WHERE film_id = ? AND genre_id = ?)";
+        List<Object[]> insertArgs = genreIds.stream()
+                .map(genreId -> new Object[]{filmId, genreId, filmId, genreId})
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(insertSql, insertArgs);
+    }
+
     @Override
     public void delete(Film film) {
         String sqlQuery = "DELETE FROM film WHERE id = ?";
@@ -122,29 +217,98 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public List<Film> findAll() {
-        String sql = "SELECT f.id, f.name, f.release_date, f.description, f.duration, f.rate, f.rating_id, r.name AS rating_name " +
-                "FROM film AS f " +
-                "LEFT JOIN rating AS r ON r.id = f.rating_id ";
-        return jdbcTemplate.query(sql, this::mapRowToFilm);
+        List<Film> films = jdbcTemplate.query(FILM_SELECT, this::mapRowToFilm);
+        fillGenresAndLikes(films, true);
+        return films;
+    }
+
+    // страница фильмов с id больше afterId в порядке первичного ключа
+    @Override
+    public List<Film> findPage(int afterId, int limit) {
+        String sql = FILM_SELECT + "WHERE f.id > ? ORDER BY f.id LIMIT ?";
+        List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, afterId, limit);
+        fillGenresAndLikes(films, false);
+        return films;
+    }
+
+    // все фильмы потоком: курсор только вперед, в памяти не больше одной порции фильмов.
+    // Транзакция держит соединение курсора, и жанры и лайки порции читаются через него, а не через второе из пула
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<Film> consumer) {
+        List<Film> chunk = new ArrayList<>(SqlChunks.IN_CHUNK_SIZE);
+        PreparedStatementCreator statement = connection -> {
+            PreparedStatement stmt = connection.prepareStatement(FILM_SELECT + "ORDER BY f.id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            return stmt;
+        };
+        RowCallbackHandler handler = rs -> {
+            chunk.add(mapRowToFilm(rs, rs.getRow()));
+            if (chunk.size() == SqlChunks.IN_CHUNK_SIZE) {
+                emitChunk(chunk, consumer);
+            }
+        };
+        jdbcTemplate.query(statement, handler);
+        emitChunk(chunk, consumer);
+    }
+
+    private void emitChunk(List<Film> chunk, Consumer<Film> consumer) {
+        fillGenresAndLikes(chunk, false);
+        chunk.forEach(consumer);
+        chunk.clear();
     }
 
     @Override
     public Film get(int id) {
+        Film film;
+        try {
+            String sqlQuery = FILM_SELECT + "WHERE f.id = ?";
+            film = jdbcTemplate.queryForObject(sqlQuery, this::mapRowToFilm, id);
+        } catch (EmptyResultDataAccessException e) {
+            log.error(LogMarkers.NOT_FOUND, "Фильм с id = {} не найден", id);
+            throw new FilmNotFoundException("Фильм с id = " + id + " не найден");
+        }
+        fillGenresAndLikes(List.of(film), false);
+        return film;
+    }
+
+    // версия одним запросом по первичному ключу, без сборки фильма
+    @Override
+    public EntityVersion getVersion(int id) {
         try {
-            String sqlQuery = "SELECT f.id, f.name, f.release_date, f.description, f.duration, f.rate, f.rating_id, r.name AS rating_name " +
-                    "FROM film AS f " +
-                    "LEFT JOIN rating AS r ON r.id = f.rating_id " +
-                    "WHERE f.id = ?";
-            return jdbcTemplate.queryForObject(sqlQuery, this::mapRowToFilm, id);
+            return jdbcTemplate.queryForObject("SELECT version, updated_at FROM film WHERE id = ?",
+                    (rs, rowNum) -> new EntityVersion(rs.getLong("version"),
+                            rs.getObject("updated_at", OffsetDateTime.class).toInstant()), id);
         } catch (EmptyResultDataAccessException e) {
-            log.error("Фильм с id = {} не найден", id);
+            log.error(LogMarkers.NOT_FOUND, "Фильм с id = {} не найден", id);
             throw new FilmNotFoundException("Фильм с id = " + id + " не найден");
         }
     }
 
+    // фильмы в порядке переданных id, отсутствующие id пропускаются
+    @Override
+    public List<Film> getByIds(List<Integer> ids) {
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += SqlChunks.IN_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + SqlChunks.IN_CHUNK_SIZE, ids.size()));
+            String sql = FILM_SELECT + "WHERE f.id IN (" + placeholders(chunk.size()) + ")";
+            jdbcTemplate.query(sql, this::mapRowToFilm, chunk.toArray())
+                    .forEach(film -> filmsById.put(film.getId(), film));
+        }
+        List<Film> films = new ArrayList<>(filmsById.size());
+        for (Integer id : ids) {
+            Film film = filmsById.get(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        fillGenresAndLikes(films, false);
+        return films;
+    }
+
     private Film mapRowToFilm(ResultSet rs, int i) throws SQLException {
         Mpa mpa = makeRating(rs);
-        List<Genre> genres = getAllGenresByFilmId(rs.getInt("id"));
 
         Film film = Film.builder().id(rs.getInt("id"))
                 .name(rs.getString("name"))
@@ -153,33 +317,87 @@ public class FilmDbStorage implements FilmStorage {
                 .rate(rs.getInt("rate"))
                 .duration(rs.getInt("duration"))
                 .mpa(mpa)
-                .genres(new HashSet<>(genres))
-                .likes(new HashSet<>(getLikes(rs.getInt("id"))))
+                .genres(new LinkedHashSet<>())
+                .likes(new IntSet())
                 .build();
         return film;
     }
 
+    // догружает жанры и лайки фиксированным числом запросов вместо двух запросов на каждый фильм.
+    // allFilms = true - в списке вся таблица film, фильтр по id не нужен
+    private void fillGenresAndLikes(List<Film> films, boolean allFilms) {
+        if (films.isEmpty()) {
+            return;
+        }
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+        }
+        if (allFilms) {
+            loadGenres(filmsById, "", new Object[0]);
+            loadLikes(filmsById, "", new Object[0]);
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(filmsById.keySet());
+        for (int from = 0; from < ids.size(); from += SqlChunks.IN_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + SqlChunks.IN_CHUNK_SIZE, ids.size()));
+            String placeholders = placeholders(chunk.size());
+            loadGenres(filmsById, "WHERE fg.film_id IN (" + placeholders + ") ", chunk.toArray());
+            loadLikes(filmsById, "WHERE ff.film_id IN (" + placeholders + ") ", chunk.toArray());
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    // названия жанров берутся из справочника, join с genre не нужен
+    private void loadGenres(Map<Integer, Film> filmsById, String where, Object[] args) {
+        String sql = "SELECT fg.film_id, fg.genre_id FROM film_genre AS fg " +
+                where +
+                "ORDER BY fg.film_id, fg.genre_id";
+        RowCallbackHandler handler = rs -> {
+            Film film = filmsById.get(rs.getInt("film_id"));
+            if (film != null) {
+                int genreId = rs.getInt("genre_id");
+                Genre genre = referenceData.getGenre(genreId);
+                film.getGenres().add(genre != null ? genre : new Genre(genreId, null));
+            }
+        };
+        jdbcTemplate.query(sql, handler, args);
+    }
+
+    private void loadLikes(Map<Integer, Film> filmsById, String where, Object[] args) {
+        String sql = "SELECT ff.film_id, ff.user_id FROM favorite_films AS ff " +
+                where +
+                "ORDER BY ff.film_id, ff.user_id";
+        RowCallbackHandler handler = rs -> {
+            Film film = filmsById.get(rs.getInt("film_id"));
+            if (film != null) {
+                film.getLikes().addInt(rs.getInt("user_id"));
+            }
+        };
+        jdbcTemplate.query(sql, handler, args);
+    }
+
     @Override
     public Genre getGenre(int id) {
-        try {
-            return jdbcTemplate.queryForObject("SELECT * FROM genre WHERE id = ?", this::makeGenre, id);
-        } catch (EmptyResultDataAccessException e) {
-            log.error("Жанр с id = {} не найден", id);
+        Genre genre = referenceData.getGenre(id);
+        if (genre == null) {
+            log.error(LogMarkers.NOT_FOUND, "Жанр с id = {} не найден", id);
             throw new GenreNotFoundException("Жанр с id = " + id + " не найден");
         }
+        return genre;
     }
 
     @Override
     public List<Genre> findAllGenres() {
-        String sql = "SELECT * FROM genre";
-        return jdbcTemplate.query(sql, this::makeGenre);
+        return referenceData.findAllGenres();
     }
 
-    public List<Genre> getAllGenresByFilmId(Integer filmId) {
-        String sql = "SELECT g.* FROM film_genre AS fg " +
-                "INNER JOIN genre AS g  ON g.id = fg.genre_id " +
-                "WHERE film_id = ?";
-        return jdbcTemplate.query(sql, this::makeGenre, filmId);
+    private List<Genre> queryAllGenres() {
+        String sql = "SELECT * FROM genre";
+        return jdbcTemplate.query(sql, this::makeGenre);
     }
 
     public List<Integer> getLikes(Integer filmId) {
@@ -192,39 +410,183 @@ public class FilmDbStorage implements FilmStorage {
         return rs.getInt("user_id");
     }
 
-    public void deleteGenreFromFilm(int filmId, int genreId) {
-        String sqlQuery = "DELETE FROM film_genre WHERE film_id = ? and genre_id = ?";
-        jdbcTemplate.update(sqlQuery, filmId, genreId);
-    }
-
     @Override
     public Mpa getMpa(int id) {
-        try {
-            return jdbcTemplate.queryForObject("SELECT id AS rating_id, name AS rating_name FROM rating WHERE id = ?", (rs, rowNum) -> makeRating(rs), id);
-        } catch (EmptyResultDataAccessException e) {
-            log.error("Рейтинг с id = {} не найден", id);
+        Mpa mpa = referenceData.getMpa(id);
+        if (mpa == null) {
+            log.error(LogMarkers.NOT_FOUND, "Рейтинг с id = {} не найден", id);
             throw new MpaNotFoundException("Рейтинг с id = " + id + " не найден");
         }
+        return mpa;
     }
 
     @Override
     public List<Mpa> findAllMpa() {
+        return referenceData.findAllMpa();
+    }
+
+    private List<Mpa> queryAllMpa() {
         String sql = "SELECT id AS rating_id, name AS rating_name FROM rating";
         return jdbcTemplate.query(sql, (rs, rowNum) -> makeRating(rs));
     }
 
+    // справочники загружаются после инициализации схемы, а не при первом запросе
     @Override
-    public void likeFilm(Film film, User user) {
-        String sqlFilmGenre = "INSERT INTO favorite_films(film_id, user_id) " +
-                    "values (?, ?)";
-        jdbcTemplate.update(sqlFilmGenre, film.getId(), user.getId());
+    @EventListener(ApplicationReadyEvent.class)
+    public void refreshReferenceData() {
+        referenceData.refresh();
     }
 
     @Override
-    public void dislikeFilm(Film film, User user) {
+    public void invalidateReferenceData() {
+        referenceData.invalidate();
+    }
+
+    // повторный лайк ничего не меняет: MERGE вставляет строку, только если ее нет, и возвращает 0 иначе.
+    // Одновременные одинаковые запросы может рассудить только первичный ключ favorite_films -
+    // проигравший получает DuplicateKeyException, которое тоже означает "лайк уже есть"
+    @Override
+    @Transactional
+    public boolean likeFilm(Film film, User user) {
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(LIKE_MERGE, film.getId(), user.getId());
+        } catch (DuplicateKeyException e) {
+            inserted = 0;
+        }
+        if (inserted == 0) {
+            log.debug("Пользователь с id = {} уже поставил лайк фильму с id = {}", user.getId(), film.getId());
+            return false;
+        }
+        jdbcTemplate.update("UPDATE film SET like_count = like_count + 1, " + VERSION_BUMP + " WHERE id = ?",
+                film.getId());
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean dislikeFilm(Film film, User user) {
         String sql = "DELETE FROM favorite_films " +
                 "WHERE film_id = ? AND user_id = ?";
-        jdbcTemplate.update(sql, film.getId(), user.getId());
+        int removed = jdbcTemplate.update(sql, film.getId(), user.getId());
+        if (removed > 0) {
+            jdbcTemplate.update("UPDATE film SET like_count = like_count - ?, " + VERSION_BUMP + " WHERE id = ?",
+                    removed, film.getId());
+        }
+        return removed > 0;
+    }
+
+    // пакетная вставка лайков (id фильма, id пользователя), уже существующие и лайки удаленных фильмов
+    // и пользователей пропускаются. Счетчики like_count затронутых фильмов пересчитываются по таблице
+    @Override
+    @Transactional
+    public int addLikes(List<int[]> likes) {
+        if (likes.isEmpty()) {
+            return 0;
+        }
+        int inserted = applyLikeBatch(LIKE_MERGE, likes);
+        recountLikes(likes);
+        return inserted;
+    }
+
+    // пакетное удаление лайков (id фильма, id пользователя) с пересчетом like_count затронутых фильмов
+    @Override
+    @Transactional
+    public int removeLikes(List<int[]> likes) {
+        if (likes.isEmpty()) {
+            return 0;
+        }
+        String sql = "DELETE FROM favorite_films WHERE film_id = ? AND user_id = ?";
+        int removed = applyLikeBatch(sql, likes);
+        recountLikes(likes);
+        return removed;
+    }
+
+    private int applyLikeBatch(String sql, List<int[]> likes) {
+        int[][] counts = jdbcTemplate.batchUpdate(sql, likes, likes.size(), (ps, like) -> {
+            ps.setInt(1, like[0]);
+            ps.setInt(2, like[1]);
+        });
+        int changed = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                changed += Math.max(count, 0);
+            }
+        }
+        return changed;
+    }
+
+    // версия затронутых фильмов увеличивается, даже если пачка их не изменила: лишний 200 вместо 304
+    // безопасен, а пропущенное изменение - нет
+    private void recountLikes(List<int[]> likes) {
+        List<Integer> filmIds = likes.stream().map(like -> like[0]).distinct().collect(Collectors.toList());
+        String countSql = "(SELECT COUNT(*) FROM favorite_films AS ff WHERE ff.film_id = film.id)";
+        for (int from = 0; from < filmIds.size(); from += SqlChunks.IN_CHUNK_SIZE) {
+            List<Integer> chunk = filmIds.subList(from, Math.min(from + SqlChunks.IN_CHUNK_SIZE, filmIds.size()));
+            jdbcTemplate.update("UPDATE film SET like_count = " + countSql + ", " + VERSION_BUMP +
+                    " WHERE id IN (" + placeholders(chunk.size()) + ")", chunk.toArray());
+        }
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count) {
+        String sql = FILM_SELECT + "ORDER BY f.like_count DESC, f.id LIMIT ?";
+        List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, count);
+        fillGenresAndLikes(films, false);
+        return films;
+    }
+
+    // число лайков каждого фильма по favorite_films, включая фильмы без лайков
+    @Override
+    public Map<Integer, Integer> getLikeCounts() {
+        String sql = "SELECT f.id, COUNT(ff.user_id) AS likes FROM film AS f " +
+                "LEFT JOIN favorite_films AS ff ON ff.film_id = f.id " +
+                "GROUP BY f.id";
+        Map<Integer, Integer> counts = new HashMap<>();
+        RowCallbackHandler handler = rs -> counts.put(rs.getInt("id"), rs.getInt("likes"));
+        jdbcTemplate.query(sql, handler);
+        return counts;
+    }
+
+    // сохраненные счетчики like_count для перечисленных фильмов; удаленных фильмов в ответе нет
+    @Override
+    public Map<Integer, Integer> getLikeCounts(Collection<Integer> filmIds) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        List<Integer> distinct = new ArrayList<>(new HashSet<>(filmIds));
+        RowCallbackHandler handler = rs -> counts.put(rs.getInt("id"), rs.getInt("like_count"));
+        for (int from = 0; from < distinct.size(); from += SqlChunks.IN_CHUNK_SIZE) {
+            List<Integer> chunk = distinct.subList(from, Math.min(from + SqlChunks.IN_CHUNK_SIZE, distinct.size()));
+            jdbcTemplate.query("SELECT id, like_count FROM film WHERE id IN (" + placeholders(chunk.size()) + ")",
+                    handler, chunk.toArray());
+        }
+        return counts;
+    }
+
+    // все лайки парами (id фильма, id пользователя) потоком, без загрузки таблицы в память
+    @Override
+    public void streamLikes(BiConsumer<Integer, Integer> consumer) {
+        PreparedStatementCreator statement = connection -> {
+            PreparedStatement stmt = connection.prepareStatement("SELECT film_id, user_id FROM favorite_films",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            return stmt;
+        };
+        RowCallbackHandler handler = rs -> consumer.accept(rs.getInt("film_id"), rs.getInt("user_id"));
+        jdbcTemplate.query(statement, handler);
+    }
+
+    @Override
+    public Set<Integer> getLikedFilmIds(int userId) {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT film_id FROM favorite_films WHERE user_id = ?",
+                Integer.class, userId));
+    }
+
+    // пересчитывает счетчики лайков по favorite_films, возвращает число исправленных фильмов
+    @Override
+    @Transactional
+    public int reconcileLikeCounts() {
+        String countSql = "(SELECT COUNT(*) FROM favorite_films AS ff WHERE ff.film_id = film.id)";
+        return jdbcTemplate.update("UPDATE film SET like_count = " + countSql + " WHERE like_count <> " + countSql);
     }
 
     private Genre makeGenre(ResultSet rs, int rowNum) throws SQLException {
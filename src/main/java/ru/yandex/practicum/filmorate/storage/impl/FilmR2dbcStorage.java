@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import io.r2dbc.spi.Row;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.logging.LogMarkers;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.ReactiveFilmStorage;
+import ru.yandex.practicum.filmorate.storage.SqlChunks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+// чтение фильмов через R2DBC. Жанры и лайки догружаются порциями по SqlChunks.IN_CHUNK_SIZE фильмов,
+// как в FilmDbStorage; следующая порция читается, только когда клиент забрал предыдущую
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+public class FilmR2dbcStorage implements ReactiveFilmStorage {
+    private static final String FILM_SELECT = "SELECT f.id, f.name, f.release_date, f.description, f.duration, f.rate, " +
+            "f.rating_id, r.name AS rating_name " +
+            "FROM film AS f " +
+            "LEFT JOIN rating AS r ON r.id = f.rating_id ";
+
+    private final DatabaseClient databaseClient;
+
+    public FilmR2dbcStorage(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<Film> get(int id) {
+        Flux<Film> film = databaseClient.sql(FILM_SELECT + "WHERE f.id = :id")
+                .bind("id", id)
+                .map(this::mapRowToFilm)
+                .all();
+        return withGenresAndLikes(film)
+                .next()
+                .switchIfEmpty(Mono.error(() -> {
+                    log.error(LogMarkers.NOT_FOUND, "Фильм с id = {} не найден", id);
+                    return new FilmNotFoundException("Фильм с id = " + id + " не найден");
+                }));
+    }
+
+    @Override
+    public Flux<Film> findAll() {
+        return withGenresAndLikes(databaseClient.sql(FILM_SELECT + "ORDER BY f.id")
+                .map(this::mapRowToFilm)
+                .all());
+    }
+
+    @Override
+    public Flux<Film> getPopularFilms(int count) {
+        return withGenresAndLikes(databaseClient.sql(FILM_SELECT + "ORDER BY f.like_count DESC, f.id LIMIT :count")
+                .bind("count", count)
+                .map(this::mapRowToFilm)
+                .all());
+    }
+
+    // concatMap с предвыборкой в одну порцию: в памяти не больше двух порций фильмов, порядок сохраняется
+    private Flux<Film> withGenresAndLikes(Flux<Film> films) {
+        return films.buffer(SqlChunks.IN_CHUNK_SIZE).concatMap(this::fillGenresAndLikes, 1);
+    }
+
+    private Flux<Film> fillGenresAndLikes(List<Film> films) {
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+        }
+        List<Integer> ids = new ArrayList<>(filmsById.keySet());
+        Mono<Void> genres = databaseClient.sql("SELECT fg.film_id, g.id, g.name FROM film_genre AS fg " +
+                        "INNER JOIN genre AS g ON g.id = fg.genre_id " +
+                        "WHERE fg.film_id IN (:ids) " +
+                        "ORDER BY fg.film_id, fg.genre_id")
+                .bind("ids", ids)
+                .map(row -> Map.entry(row.get("film_id", Integer.class),
+                        new Genre(row.get("id", Integer.class), row.get("name", String.class))))
+                .all()
+                .doOnNext(genre -> filmsById.get(genre.getKey()).getGenres().add(genre.getValue()))
+                .then();
+        Mono<Void> likes = databaseClient.sql("SELECT ff.film_id, ff.user_id FROM favorite_films AS ff " +
+                        "WHERE ff.film_id IN (:ids) " +
+                        "ORDER BY ff.film_id, ff.user_id")
+                .bind("ids", ids)
+                .map(row -> new int[]{row.get("film_id", Integer.class), row.get("user_id", Integer.class)})
+                .all()
+                .doOnNext(like -> filmsById.get(like[0]).getLikes().addInt(like[1]))
+                .then();
+        return genres.then(likes).thenMany(Flux.fromIterable(films));
+    }
+
+    private Film mapRowToFilm(Row row) {
+        return Film.builder().id(row.get("id", Integer.class))
+                .name(row.get("name", String.class))
+                .description(row.get("description", String.class))
+                .releaseDate(row.get("release_date", LocalDate.class))
+                .rate(intValue(row, "rate"))
+                .duration(intValue(row, "duration"))
+                .mpa(new Mpa(intValue(row, "rating_id"), row.get("rating_name", String.class)))
+                .genres(new LinkedHashSet<>())
+                .likes(new IntSet())
+                .build();
+    }
+
+    // NULL читается как 0, как ResultSet.getInt
+    private static int intValue(Row row, String column) {
+        Integer value = row.get(column, Integer.class);
+        return value != null ? value : 0;
+    }
+}
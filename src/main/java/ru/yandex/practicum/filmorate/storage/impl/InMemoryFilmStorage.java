@@ -2,48 +2,108 @@ package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.GenreNotFoundException;
+import ru.yandex.practicum.filmorate.exception.MpaNotFoundException;
+import ru.yandex.practicum.filmorate.logging.LogMarkers;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.IntSet;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.ValidationService;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+// хранилище фильмов в памяти, безопасное для одновременных запросов. Изменения одного фильма (лайки, обновление)
+// выполняются под блокировкой его полосы, множество лайков при этом заменяется копией и читается без блокировок
 @Component
 @Slf4j
 @Qualifier("InMemoryFilmStorage")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
 public class InMemoryFilmStorage implements FilmStorage {
-    private HashMap<Integer, Film> films = new HashMap<>();
-    private int idSequence = 0;
+    private static final int LOCK_STRIPES = 64;
+    // те же справочники, что заполняет data.sql
+    private static final List<Genre> GENRES = List.of(
+            new Genre(1, "Комедия"),
+            new Genre(2, "Драма"),
+            new Genre(3, "Мультфильм"),
+            new Genre(4, "Триллер"),
+            new Genre(5, "Документальный"),
+            new Genre(6, "Боевик"));
+    private static final List<Mpa> MPA = List.of(
+            new Mpa(1, "G"),
+            new Mpa(2, "PG"),
+            new Mpa(3, "PG-13"),
+            new Mpa(4, "R"),
+            new Mpa(5, "NC-17"));
+
+    private final ConcurrentSkipListMap<Integer, Film> films = new ConcurrentSkipListMap<>();
+    private final AtomicInteger idSequence = new AtomicInteger();
+    private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+    private final EntityVersions versions = new EntityVersions();
+    private final ReferenceDataRegistry referenceData = new ReferenceDataRegistry(() -> GENRES, () -> MPA);
 
     @Override
     public Film create(Film film) {
         ValidationService.check(film);
-        film.setId(++idSequence);
+        film.setId(idSequence.incrementAndGet());
+        film.setMpa(resolveMpa(film.getMpa()));
+        film.setGenres(resolveGenres(film.getGenres()));
+        film.setLikes(new IntSet(film.getLikes()));
+        versions.create(film.getId());
         films.put(film.getId(), film);
         return film;
     }
 
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        films.forEach(this::create);
+        return films;
+    }
+
+    // лайки не передаются в запросе на обновление, поэтому сохраняются от прежней версии фильма
     @Override
     public Film update(Film film) {
-        if (!films.containsKey(film.getId())) {
-            log.error("Фильм с id = {} не найден", film.getId());
-            throw new FilmNotFoundException("Фильм с id = " + film.getId() + " не найден");
-        }
+        get(film.getId());
         ValidationService.check(film);
-        films.put(film.getId(), film);
-        return film;
+        if (film.getMpa() != null && referenceData.getMpa(film.getMpa().getId()) == null) {
+            throw new IllegalArgumentException("Переданный id рейтинг не существует");
+        }
+        return locks.withLock(film.getId(), () -> {
+            Film existing = get(film.getId());
+            film.setMpa(resolveMpa(film.getMpa()));
+            film.setGenres(resolveGenres(film.getGenres()));
+            film.setLikes(existing.getLikes());
+            films.put(film.getId(), film);
+            versions.touch(film.getId());
+            return film;
+        });
     }
 
     @Override
     public void delete(Film film) {
         films.remove(film.getId());
+        versions.remove(film.getId());
     }
 
     @Override
@@ -51,43 +111,220 @@ public class InMemoryFilmStorage implements FilmStorage {
         return new ArrayList<>(films.values());
     }
 
+    @Override
+    public List<Film> findPage(int afterId, int limit) {
+        return films.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        films.values().forEach(consumer);
+    }
+
     @Override
     public Film get(int id) {
-        if (!films.containsKey(id)) {
-            log.error("Фильм с id = {} не найден", id);
+        Film film = films.get(id);
+        if (film == null) {
+            log.error(LogMarkers.NOT_FOUND, "Фильм с id = {} не найден", id);
             throw new FilmNotFoundException("Фильм с id = " + id + " не найден");
         }
-        return films.get(id);
+        return film;
+    }
+
+    @Override
+    public EntityVersion getVersion(int id) {
+        EntityVersion version = versions.get(id);
+        if (version == null) {
+            log.error(LogMarkers.NOT_FOUND, "Фильм с id = {} не найден", id);
+            throw new FilmNotFoundException("Фильм с id = " + id + " не найден");
+        }
+        return version;
+    }
+
+    @Override
+    public List<Film> getByIds(List<Integer> ids) {
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Set<Integer> findExistingIds(Collection<Integer> ids) {
+        return ids.stream()
+                .filter(films::containsKey)
+                .collect(Collectors.toSet());
     }
 
     @Override
     public Genre getGenre(int id) {
-       throw new UnsupportedOperationException("not implemented yet");
+        Genre genre = referenceData.getGenre(id);
+        if (genre == null) {
+            log.error(LogMarkers.NOT_FOUND, "Жанр с id = {} не найден", id);
+            throw new GenreNotFoundException("Жанр с id = " + id + " не найден");
+        }
+        return genre;
     }
 
     @Override
     public List<Genre> findAllGenres() {
-        throw new UnsupportedOperationException("not implemented yet");
+        return referenceData.findAllGenres();
     }
 
     @Override
     public Mpa getMpa(int id) {
-        throw new UnsupportedOperationException("not implemented yet");
+        Mpa mpa = referenceData.getMpa(id);
+        if (mpa == null) {
+            log.error(LogMarkers.NOT_FOUND, "Рейтинг с id = {} не найден", id);
+            throw new MpaNotFoundException("Рейтинг с id = " + id + " не найден");
+        }
+        return mpa;
     }
 
     @Override
     public List<Mpa> findAllMpa() {
-        throw new UnsupportedOperationException("not implemented yet");
+        return referenceData.findAllMpa();
+    }
+
+    @Override
+    public void refreshReferenceData() {
+        referenceData.refresh();
     }
 
     @Override
-    public void likeFilm(Film film, User user) {
-        film.getLikes().add(user.getId());
+    public void invalidateReferenceData() {
+        referenceData.invalidate();
     }
 
     @Override
-    public void dislikeFilm(Film film, User user) {
-        film.getLikes().remove(user.getId());
+    public boolean likeFilm(Film film, User user) {
+        return locks.withLock(film.getId(), () -> {
+            Film stored = get(film.getId());
+            if (stored.getLikes().containsInt(user.getId())) {
+                return false;
+            }
+            stored.setLikes(stored.getLikes().with(user.getId()));
+            versions.touch(film.getId());
+            return true;
+        });
     }
 
+    @Override
+    public boolean dislikeFilm(Film film, User user) {
+        return locks.withLock(film.getId(), () -> {
+            Film stored = get(film.getId());
+            if (!stored.getLikes().containsInt(user.getId())) {
+                return false;
+            }
+            stored.setLikes(stored.getLikes().without(user.getId()));
+            versions.touch(film.getId());
+            return true;
+        });
+    }
+
+    // пары (id фильма, id пользователя); лайки несуществующих фильмов пропускаются
+    @Override
+    public int addLikes(List<int[]> likes) {
+        int inserted = 0;
+        for (int[] like : likes) {
+            boolean added = locks.withLock(like[0], () -> {
+                Film stored = films.get(like[0]);
+                if (stored == null || stored.getLikes().containsInt(like[1])) {
+                    return false;
+                }
+                stored.setLikes(stored.getLikes().with(like[1]));
+                versions.touch(like[0]);
+                return true;
+            });
+            if (added) {
+                inserted++;
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public int removeLikes(List<int[]> likes) {
+        int removed = 0;
+        for (int[] like : likes) {
+            boolean changed = locks.withLock(like[0], () -> {
+                Film stored = films.get(like[0]);
+                if (stored == null || !stored.getLikes().containsInt(like[1])) {
+                    return false;
+                }
+                stored.setLikes(stored.getLikes().without(like[1]));
+                versions.touch(like[0]);
+                return true;
+            });
+            if (changed) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count) {
+        return films.values().stream()
+                .sorted(Comparator.comparingInt((Film f) -> -f.getLikes().size()).thenComparingInt(Film::getId))
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<Integer, Integer> getLikeCounts() {
+        return films.values().stream().collect(Collectors.toMap(Film::getId, f -> f.getLikes().size()));
+    }
+
+    @Override
+    public Map<Integer, Integer> getLikeCounts(Collection<Integer> filmIds) {
+        return filmIds.stream()
+                .distinct()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(Film::getId, f -> f.getLikes().size()));
+    }
+
+    @Override
+    public void streamLikes(BiConsumer<Integer, Integer> consumer) {
+        for (Film film : films.values()) {
+            film.getLikes().forEachInt(userId -> consumer.accept(film.getId(), userId));
+        }
+    }
+
+    @Override
+    public Set<Integer> getLikedFilmIds(int userId) {
+        return films.values().stream()
+                .filter(film -> film.getLikes().containsInt(userId))
+                .map(Film::getId)
+                .collect(Collectors.toSet());
+    }
+
+    // счетчики лайков в памяти не хранятся отдельно от множеств лайков
+    @Override
+    public int reconcileLikeCounts() {
+        return 0;
+    }
+
+    // рейтинг из справочника по id, как его вернула бы база
+    private Mpa resolveMpa(Mpa mpa) {
+        if (mpa == null) {
+            return null;
+        }
+        Mpa known = referenceData.getMpa(mpa.getId());
+        return known != null ? known : mpa;
+    }
+
+    // жанры из справочника по возрастанию id, несуществующие отбрасываются
+    private Set<Genre> resolveGenres(Set<Genre> genres) {
+        return genres.stream()
+                .map(Genre::getId)
+                .distinct()
+                .sorted()
+                .map(referenceData::getGenre)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
 }
@@ -2,50 +2,91 @@ package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.logging.LogMarkers;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+import ru.yandex.practicum.filmorate.model.IntSet;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.ValidationService;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+// хранилище пользователей в памяти, безопасное для одновременных запросов. Дружба меняется сразу у двух
+// пользователей под блокировками обеих полос, поэтому связь не бывает видна только с одной стороны
 @Component
 @Slf4j
 @Qualifier("InMemoryUserStorage")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
 public class InMemoryUserStorage implements UserStorage {
-    private HashMap<Integer, User> users = new HashMap<>();
-    private int idSequence = 0;
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentSkipListMap<Integer, User> users = new ConcurrentSkipListMap<>();
+    private final AtomicInteger idSequence = new AtomicInteger();
+    private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+    private final EntityVersions versions = new EntityVersions();
 
     @Override
     public User create(User user) {
         ValidationService.check(user);
-        user.setId(++idSequence);
+        user.setId(idSequence.incrementAndGet());
         if (Optional.ofNullable(user.getName()).isEmpty() || user.getName().isEmpty()) {
             user.setName(user.getLogin());
         }
+        user.setFriends(new IntSet(user.getFriends()));
+        versions.create(user.getId());
         users.put(user.getId(), user);
         return user;
     }
 
+    @Override
+    public List<User> createAll(List<User> users) {
+        users.forEach(this::create);
+        return users;
+    }
+
+    // друзья не передаются в запросе на обновление, поэтому сохраняются от прежней версии пользователя
     @Override
     public User update(User user) {
-        if (!users.containsKey(user.getId())) {
-            log.error("Пользователь с id = {} не найден", user.getId());
-            throw new UserNotFoundException("Пользователь с id = " + user.getId() + " не найден");
-        }
+        get(user.getId());
         ValidationService.check(user);
         if (Optional.ofNullable(user.getName()).isEmpty()) {
             user.setName(user.getLogin());
         }
-        users.put(user.getId(), user);
-        return user;
+        return locks.withLock(user.getId(), () -> {
+            User existing = get(user.getId());
+            user.setFriends(existing.getFriends());
+            users.put(user.getId(), user);
+            versions.touch(user.getId());
+            return user;
+        });
     }
 
     @Override
     public void delete(User user) {
-        users.remove(user.getId());
+        User removed = users.remove(user.getId());
+        if (removed == null) {
+            return;
+        }
+        versions.remove(user.getId());
+        for (Integer friendId : removed.getFriends()) {
+            locks.withLocks(user.getId(), friendId, () -> {
+                User friend = users.get(friendId);
+                if (friend != null) {
+                    friend.setFriends(friend.getFriends().without(user.getId()));
+                    versions.touch(friendId);
+                }
+                return null;
+            });
+        }
     }
 
     @Override
@@ -53,45 +94,160 @@ public class InMemoryUserStorage implements UserStorage {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public List<User> findPage(int afterId, int limit) {
+        return users.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+        users.values().forEach(consumer);
+    }
+
     @Override
     public User get(int id) {
-        if (!users.containsKey(id)) {
-            log.error("Пользователь с id = {} не найден", id);
+        User user = users.get(id);
+        if (user == null) {
+            log.error(LogMarkers.NOT_FOUND, "Пользователь с id = {} не найден", id);
             throw new UserNotFoundException("Пользователь с id = " + id + " не найден");
         }
-        return users.get(id);
+        return user;
     }
 
     @Override
-    public void addFriend(int userId, int friendId) {
-        User user = get(userId);
-        User friend = get(friendId);
+    public EntityVersion getVersion(int id) {
+        EntityVersion version = versions.get(id);
+        if (version == null) {
+            log.error(LogMarkers.NOT_FOUND, "Пользователь с id = {} не найден", id);
+            throw new UserNotFoundException("Пользователь с id = " + id + " не найден");
+        }
+        return version;
+    }
 
-        user.getFriends().add(friend.getId());
-        friend.getFriends().add(user.getId());
+    // друзья хранятся в самом объекте, отдельной загрузки нет
+    @Override
+    public User getWithoutFriends(int id) {
+        return get(id);
     }
 
     @Override
-    public void removeFriend(int userId, int friendId) {
-        User user = get(userId);
-        User friend = get(friendId);
+    public Set<Integer> findExistingIds(Collection<Integer> ids) {
+        return ids.stream()
+                .filter(users::containsKey)
+                .collect(Collectors.toSet());
+    }
+
+    // проверка и изменение под блокировками обоих пользователей, поэтому одновременные одинаковые запросы
+    // добавляют дружбу один раз и true получает только один из них
+    @Override
+    public boolean addFriend(int userId, int friendId) {
+        return locks.withLocks(userId, friendId, () -> {
+            User user = get(userId);
+            User friend = get(friendId);
+            if (user.getFriends().containsInt(friendId)) {
+                return false;
+            }
+            user.setFriends(user.getFriends().with(friendId));
+            versions.touch(userId);
+            if (!friend.getFriends().containsInt(userId)) {
+                friend.setFriends(friend.getFriends().with(userId));
+                versions.touch(friendId);
+            }
+            return true;
+        });
+    }
+
+    // пары (от кого, кому); дружба в памяти взаимная, поэтому считаются пары, которых еще не было
+    @Override
+    public int addFriendships(List<int[]> friendships) {
+        int inserted = 0;
+        for (int[] friendship : friendships) {
+            boolean added = locks.withLocks(friendship[0], friendship[1], () -> {
+                User user = users.get(friendship[0]);
+                User friend = users.get(friendship[1]);
+                if (user == null || friend == null || user.getFriends().containsInt(friendship[1])) {
+                    return false;
+                }
+                user.setFriends(user.getFriends().with(friendship[1]));
+                versions.touch(friendship[0]);
+                if (!friend.getFriends().containsInt(friendship[0])) {
+                    friend.setFriends(friend.getFriends().with(friendship[0]));
+                    versions.touch(friendship[1]);
+                }
+                return true;
+            });
+            if (added) {
+                inserted++;
+            }
+        }
+        return inserted;
+    }
 
-        user.getFriends().remove(friend.getId());
-        friend.getFriends().remove(user.getId());
+    @Override
+    public boolean removeFriend(int userId, int friendId) {
+        return locks.withLocks(userId, friendId, () -> {
+            User user = get(userId);
+            User friend = get(friendId);
+            if (!user.getFriends().containsInt(friendId)) {
+                return false;
+            }
+            user.setFriends(user.getFriends().without(friendId));
+            friend.setFriends(friend.getFriends().without(userId));
+            versions.touch(userId);
+            versions.touch(friendId);
+            return true;
+        });
     }
 
     @Override
     public List<User> getCommonFriends(int userId, int otherId) {
         User user = get(userId);
         User other = get(otherId);
-        Set<Integer> commonFriends = new HashSet<>(user.getFriends());
-        commonFriends.retainAll(other.getFriends());
-        return commonFriends.stream().map(this::get).collect(Collectors.toList());
+        IntSet otherFriends = other.getFriends();
+        List<Integer> commonFriends = new ArrayList<>();
+        user.getFriends().forEachInt(id -> {
+            if (otherFriends.containsInt(id)) {
+                commonFriends.add(id);
+            }
+        });
+        return existingUsers(commonFriends);
     }
 
     @Override
     public List<User> getUserFriends(int userId) {
         User user = get(userId);
-        return user.getFriends().stream().map(this::get).collect(Collectors.toList());
+        return existingUsers(user.getFriends());
+    }
+
+    @Override
+    public List<User> getFriendSuggestions(int userId, int limit) {
+        IntSet friends = get(userId).getFriends();
+        Map<Integer, Integer> mutualFriends = new HashMap<>();
+        friends.forEachInt(friendId -> {
+            User friend = users.get(friendId);
+            if (friend != null) {
+                friend.getFriends().forEachInt(candidate -> {
+                    if (candidate != userId && !friends.containsInt(candidate)) {
+                        mutualFriends.merge(candidate, 1, Integer::sum);
+                    }
+                });
+            }
+        });
+        return existingUsers(mutualFriends.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList()));
+    }
+
+    // пользователи по id; удаленные между чтением множества друзей и этим вызовом пропускаются
+    private List<User> existingUsers(Collection<Integer> ids) {
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 }
@@ -1,28 +1,61 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.logging.LogMarkers;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+import ru.yandex.practicum.filmorate.model.IntSet;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.ValidationService;
+import ru.yandex.practicum.filmorate.storage.FriendIndex;
+import ru.yandex.practicum.filmorate.storage.SqlChunks;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component
 @Slf4j
 @Qualifier("UserDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
 public class UserDbStorage implements UserStorage {
+    private static final String USER_INSERT = "INSERT INTO users(email, login, name, birthday) " +
+            "values (?, ?, ?, ?)";
+    // заявка в друзья вставляется, только если ее еще нет (и оба пользователя существуют);
+    // число измененных строк - 1 для новой заявки, 0 для повтора
+    private static final String FRIENDSHIP_MERGE = "MERGE INTO friendship AS fs " +
+            "USING (SELECT a.id AS user_from, b.id AS user_to FROM users AS a, users AS b WHERE a.id = ? AND b.id = ?) AS r " +
+            "ON fs.user_from = r.user_from AND fs.user_to = r.user_to " +
+            "WHEN NOT MATCHED THEN INSERT (user_from, user_to, is_confirmed) VALUES (r.user_from, r.user_to, FALSE)";
+    // любое изменение, видимое в ответе GET /users/{id}, увеличивает версию пользователя
+    private static final String VERSION_BUMP = "version = version + 1, updated_at = CURRENT_TIMESTAMP";
+    private static final int STREAM_CHUNK_SIZE = 500;
+    private static final int STREAM_FETCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final FriendIndex friendIndex = new FriendIndex();
 
     public UserDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
@@ -35,16 +68,10 @@ public class UserDbStorage implements UserStorage {
         }
         ValidationService.check(user);
 
-        String sqlQuery = "INSERT INTO users(email, login, name, birthday) " +
-                "values (?, ?, ?, ?)";
-
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(connection -> {
-            PreparedStatement stmt = connection.prepareStatement(sqlQuery, new String[]{"id"});
-            stmt.setString(1, user.getEmail());
-            stmt.setString(2, user.getLogin());
-            stmt.setString(3, user.getName());
-            stmt.setDate(4, Date.valueOf(user.getBirthday()));
+            PreparedStatement stmt = connection.prepareStatement(USER_INSERT, new String[]{"id"});
+            setUserParameters(stmt, user);
             return stmt;
         }, keyHolder);
 
@@ -53,16 +80,52 @@ public class UserDbStorage implements UserStorage {
         return user;
     }
 
+    // пакетная вставка уже проверенных пользователей одной пачкой INSERT с возвратом ключей
+    @Override
+    @Transactional
+    public List<User> createAll(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        ConnectionCallback<Void> insert = connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(USER_INSERT, new String[]{"id"})) {
+                for (User user : users) {
+                    if (Optional.ofNullable(user.getName()).isEmpty() || user.getName().isBlank()) {
+                        user.setName(user.getLogin());
+                    }
+                    setUserParameters(stmt, user);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    for (int i = 0; keys.next(); i++) {
+                        users.get(i).setId(keys.getInt(1));
+                    }
+                }
+            }
+            return null;
+        };
+        jdbcTemplate.execute(insert);
+        return users;
+    }
+
+    private static void setUserParameters(PreparedStatement stmt, User user) throws SQLException {
+        stmt.setString(1, user.getEmail());
+        stmt.setString(2, user.getLogin());
+        stmt.setString(3, user.getName());
+        stmt.setDate(4, Date.valueOf(user.getBirthday()));
+    }
+
     @Override
     public User update(User user) {
-        get(user.getId());
+        getWithoutFriends(user.getId());
         if (Optional.ofNullable(user.getName()).isEmpty() || user.getName().isBlank()) {
             user.setName(user.getLogin());
         }
         ValidationService.check(user);
 
         String sqlQuery = "update users set " +
-                "email = ?, login = ?, name = ? , birthday = ? " +
+                "email = ?, login = ?, name = ? , birthday = ?, " + VERSION_BUMP + " " +
                 "where id = ?";
         jdbcTemplate.update(sqlQuery,
                 user.getEmail(),
@@ -74,57 +137,203 @@ public class UserDbStorage implements UserStorage {
         return get(user.getId());
     }
 
+    // вместе с пользователем каскадно удаляются его лайки и заявки в друзья к нему, поэтому счетчики лайков
+    // и версии затронутых фильмов и версии пользователей меняются до удаления
     @Override
+    @Transactional
     public void delete(User user) {
+        jdbcTemplate.update("UPDATE film SET like_count = like_count - 1, " + VERSION_BUMP +
+                " WHERE id IN (SELECT film_id FROM favorite_films WHERE user_id = ?)", user.getId());
+        jdbcTemplate.update("UPDATE users SET " + VERSION_BUMP +
+                " WHERE id IN (SELECT user_from FROM friendship WHERE user_to = ?)", user.getId());
         String sqlQuery = "DELETE FROM users WHERE id = ?";
         jdbcTemplate.update(sqlQuery, user.getId());
+        afterCommit(() -> friendIndex.removeUser(user.getId()));
     }
 
     @Override
     public List<User> findAll() {
         String sql = "SELECT * FROM users";
         List<User> userList = jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs));
-        for (User u : userList) {
-            List<Integer> friendsByUser = findFriendsIdsByUser(u);
-            u.getFriends().addAll(new HashSet<>(friendsByUser));
-        }
+        fillFriends(userList, true);
         return userList;
     }
 
+    // страница пользователей с id больше afterId в порядке первичного ключа
+    @Override
+    public List<User> findPage(int afterId, int limit) {
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        List<User> userList = jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), afterId, limit);
+        fillFriends(userList, false);
+        return userList;
+    }
+
+    // все пользователи потоком: курсор только вперед, в памяти не больше одной порции пользователей.
+    // Транзакция держит соединение курсора, и друзья порции читаются через него, а не через второе из пула
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<User> consumer) {
+        List<User> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        PreparedStatementCreator statement = connection -> {
+            PreparedStatement stmt = connection.prepareStatement("SELECT * FROM users ORDER BY id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            return stmt;
+        };
+        RowCallbackHandler handler = rs -> {
+            chunk.add(makeUser(rs));
+            if (chunk.size() == STREAM_CHUNK_SIZE) {
+                emitChunk(chunk, consumer);
+            }
+        };
+        jdbcTemplate.query(statement, handler);
+        emitChunk(chunk, consumer);
+    }
+
+    private void emitChunk(List<User> chunk, Consumer<User> consumer) {
+        fillFriends(chunk, false);
+        chunk.forEach(consumer);
+        chunk.clear();
+    }
+
     @Override
     public User get(int id) {
-        User user;
+        User user = getWithoutFriends(id);
+        fillFriends(List.of(user), false);
+        return user;
+    }
+
+    // версия одним запросом по первичному ключу, без загрузки друзей
+    @Override
+    public EntityVersion getVersion(int id) {
         try {
-            user = jdbcTemplate.queryForObject("SELECT * FROM users WHERE id = ?", (rs, rowNum) -> makeUser(rs), id);
+            return jdbcTemplate.queryForObject("SELECT version, updated_at FROM users WHERE id = ?",
+                    (rs, rowNum) -> new EntityVersion(rs.getLong("version"),
+                            rs.getObject("updated_at", OffsetDateTime.class).toInstant()), id);
         } catch (EmptyResultDataAccessException e) {
-            log.error("Пользователь с id = {} не найден", id);
+            log.error(LogMarkers.NOT_FOUND, "Пользователь с id = {} не найден", id);
             throw new UserNotFoundException("Пользователь с id = " + id + " не найден");
         }
-        List<Integer> friendsByUser = findFriendsIdsByUser(user);
-        user.getFriends().addAll(new HashSet<>(friendsByUser));
-        return user;
     }
 
+    // пользователь без списка друзей, для проверки существования и ссылок на пользователя
     @Override
-    public void addFriend(int userId, int friendId) {
-        get(friendId);
-        String sqlQuery = "INSERT INTO friendship(user_from, user_to, is_confirmed) " +
-                "values (?, ?, ?)";
+    public User getWithoutFriends(int id) {
+        try {
+            return jdbcTemplate.queryForObject("SELECT * FROM users WHERE id = ?", (rs, rowNum) -> makeUser(rs), id);
+        } catch (EmptyResultDataAccessException e) {
+            log.error(LogMarkers.NOT_FOUND, "Пользователь с id = {} не найден", id);
+            throw new UserNotFoundException("Пользователь с id = " + id + " не найден");
+        }
+    }
 
-        jdbcTemplate.update(sqlQuery,
-                userId,
-                friendId,
-                false);
+    // id из списка, для которых есть пользователь
+    @Override
+    public Set<Integer> findExistingIds(Collection<Integer> ids) {
+        Set<Integer> existing = new HashSet<>();
+        List<Integer> distinct = new ArrayList<>(new HashSet<>(ids));
+        for (int from = 0; from < distinct.size(); from += SqlChunks.IN_CHUNK_SIZE) {
+            List<Integer> chunk = distinct.subList(from, Math.min(from + SqlChunks.IN_CHUNK_SIZE, distinct.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            existing.addAll(jdbcTemplate.queryForList("SELECT id FROM users WHERE id IN (" + placeholders + ")",
+                    Integer.class, chunk.toArray()));
+        }
+        return existing;
+    }
+
+    // повторная заявка ничего не меняет; одновременные одинаковые заявки рассуживает первичный ключ friendship
+    @Override
+    @Transactional
+    public boolean addFriend(int userId, int friendId) {
+        getWithoutFriends(userId);
+        getWithoutFriends(friendId);
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(FRIENDSHIP_MERGE, userId, friendId);
+        } catch (DuplicateKeyException e) {
+            inserted = 0;
+        }
+        if (inserted == 0) {
+            log.debug("Пользователь с id = {} уже добавил в друзья пользователя с id = {}", userId, friendId);
+            return false;
+        }
+        touch(userId);
+        afterCommit(() -> friendIndex.add(userId, friendId));
+        return true;
+    }
+
+    // пакетная вставка заявок в друзья (от кого, кому), уже существующие пропускаются
+    @Override
+    @Transactional
+    public int addFriendships(List<int[]> friendships) {
+        if (friendships.isEmpty()) {
+            return 0;
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(FRIENDSHIP_MERGE, friendships, friendships.size(), (ps, friendship) -> {
+            ps.setInt(1, friendship[0]);
+            ps.setInt(2, friendship[1]);
+        });
+        List<int[]> inserted = new ArrayList<>();
+        Set<Integer> changedUsers = new HashSet<>();
+        for (int i = 0, row = 0; i < counts.length; i++) {
+            for (int count : counts[i]) {
+                if (count > 0) {
+                    int[] friendship = friendships.get(row);
+                    inserted.add(friendship);
+                    changedUsers.add(friendship[0]);
+                }
+                row++;
+            }
+        }
+        List<Integer> ids = new ArrayList<>(changedUsers);
+        for (int from = 0; from < ids.size(); from += SqlChunks.IN_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + SqlChunks.IN_CHUNK_SIZE, ids.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.update("UPDATE users SET " + VERSION_BUMP + " WHERE id IN (" + placeholders + ")",
+                    chunk.toArray());
+        }
+        afterCommit(() -> inserted.forEach(friendship -> friendIndex.add(friendship[0], friendship[1])));
+        return inserted.size();
     }
 
     @Override
-    public void removeFriend(int userId, int friendId) {
+    @Transactional
+    public boolean removeFriend(int userId, int friendId) {
         String sqlQuery = "DELETE FROM friendship WHERE user_from = ? and user_to = ?";
-        jdbcTemplate.update(sqlQuery, userId, friendId);
+        if (jdbcTemplate.update(sqlQuery, userId, friendId) == 0) {
+            return false;
+        }
+        touch(userId);
+        afterCommit(() -> friendIndex.remove(userId, friendId));
+        return true;
     }
 
+    // индекс друзей меняется только после фиксации транзакции: при откате в нем не остается дружбы,
+    // которой нет в базе. Вне транзакции изменение применяется сразу
+    private void afterCommit(Runnable indexChange) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            indexChange.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                indexChange.run();
+            }
+        });
+    }
+
+    private void touch(int userId) {
+        jdbcTemplate.update("UPDATE users SET " + VERSION_BUMP + " WHERE id = ?", userId);
+    }
+
+    // общие друзья - пересечение битовых карт индекса, из базы читаются только найденные пользователи.
+    // До построения индекса работает запрос с самосоединением friendship
     @Override
     public List<User> getCommonFriends(int userId, int otherId) {
+        if (friendIndex.isReady()) {
+            return getUsersByIds(friendIndex.common(userId, otherId));
+        }
         String sql = "SELECT DISTINCT u.* " +
                 "                FROM FRIENDSHIP f1 " +
                 "        INNER JOIN FRIENDSHIP f2 ON f1.user_to = f2.user_to " +
@@ -143,10 +352,100 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), userId);
     }
 
-    private List<Integer> findFriendsIdsByUser(User user) {
-        String sql = "SELECT * FROM friendship WHERE user_from = ? and is_confirmed = ?";
+    // возможные друзья из индекса; до его построения - запросом по друзьям друзей
+    @Override
+    public List<User> getFriendSuggestions(int userId, int limit) {
+        if (friendIndex.isReady()) {
+            return getUsersByIds(friendIndex.suggestions(userId, limit));
+        }
+        String sql = "SELECT f2.user_to AS id, COUNT(*) AS mutual " +
+                "FROM friendship AS f1 " +
+                "INNER JOIN friendship AS f2 ON f2.user_from = f1.user_to " +
+                "WHERE f1.user_from = ? " +
+                "AND f2.user_to <> ? " +
+                "AND f2.user_to NOT IN (SELECT user_to FROM friendship WHERE user_from = ?) " +
+                "GROUP BY f2.user_to " +
+                "ORDER BY mutual DESC, id " +
+                "LIMIT ?";
+        List<Integer> ids = jdbcTemplate.queryForList(sql, Integer.class, userId, userId, userId, limit);
+        return getUsersByIds(ids.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    // индекс строится по всей таблице friendship после инициализации схемы
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildFriendIndex() {
+        friendIndex.rebuild(() -> {
+            Map<Integer, RoaringBitmap> friends = new HashMap<>();
+            RowCallbackHandler handler = rs -> friends
+                    .computeIfAbsent(rs.getInt("user_from"), id -> new RoaringBitmap())
+                    .add(rs.getInt("user_to"));
+            jdbcTemplate.query("SELECT user_from, user_to FROM friendship", handler);
+            return friends;
+        });
+        log.info("Индекс друзей построен: пользователей {}, размер {} байт",
+                friendIndex.size(), friendIndex.getSizeInBytes());
+    }
 
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeFriend(rs), user.getId(), true);
+    public FriendIndex getFriendIndex() {
+        return friendIndex;
+    }
+
+    // пользователи без друзей в порядке переданных id, порциями через IN
+    private List<User> getUsersByIds(int[] ids) {
+        Map<Integer, User> usersById = new HashMap<>();
+        for (int from = 0; from < ids.length; from += SqlChunks.IN_CHUNK_SIZE) {
+            Object[] chunk = Arrays.stream(ids, from, Math.min(from + SqlChunks.IN_CHUNK_SIZE, ids.length)).boxed().toArray();
+            String placeholders = String.join(", ", Collections.nCopies(chunk.length, "?"));
+            RowCallbackHandler handler = rs -> {
+                User user = makeUser(rs);
+                usersById.put(user.getId(), user);
+            };
+            jdbcTemplate.query("SELECT * FROM users WHERE id IN (" + placeholders + ")", handler, chunk);
+        }
+        List<User> users = new ArrayList<>(usersById.size());
+        for (int id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    // друзья всех пользователей списка: для полной выборки одним запросом по всей таблице,
+    // иначе порциями через IN вместо запроса на каждого пользователя
+    private void fillFriends(List<User> users, boolean allUsers) {
+        if (users.isEmpty()) {
+            return;
+        }
+        Map<Integer, User> usersById = new HashMap<>();
+        for (User user : users) {
+            usersById.put(user.getId(), user);
+        }
+        if (allUsers) {
+            loadFriends(usersById, "", new Object[0]);
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(usersById.keySet());
+        for (int from = 0; from < ids.size(); from += SqlChunks.IN_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + SqlChunks.IN_CHUNK_SIZE, ids.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            loadFriends(usersById, "AND f.user_from IN (" + placeholders + ") ", chunk.toArray());
+        }
+    }
+
+    private void loadFriends(Map<Integer, User> usersById, String where, Object[] args) {
+        String sql = "SELECT f.user_from, f.user_to FROM friendship AS f " +
+                "WHERE f.is_confirmed = TRUE " +
+                where +
+                "ORDER BY f.user_from, f.user_to";
+        RowCallbackHandler handler = rs -> {
+            User user = usersById.get(rs.getInt("user_from"));
+            if (user != null) {
+                user.getFriends().addInt(rs.getInt("user_to"));
+            }
+        };
+        jdbcTemplate.query(sql, handler, args);
     }
 
     private User makeUser(ResultSet rs) throws SQLException {
@@ -156,11 +455,7 @@ public class UserDbStorage implements UserStorage {
                 rs.getString("login"),
                 rs.getString("name"),
                 rs.getDate("birthday").toLocalDate(),
-                new HashSet<>()
+                new IntSet()
         );
     }
-
-    private Integer makeFriend(ResultSet rs) throws SQLException {
-        return rs.getInt("user_to");
-    }
 }
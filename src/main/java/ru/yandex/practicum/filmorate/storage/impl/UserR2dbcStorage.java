@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import io.r2dbc.spi.Row;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.logging.LogMarkers;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ReactiveUserStorage;
+import ru.yandex.practicum.filmorate.storage.SqlChunks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// чтение пользователей через R2DBC. Друзья догружаются порциями по SqlChunks.IN_CHUNK_SIZE пользователей,
+// как в UserDbStorage; списки друзей, как и там, отдаются без их собственных друзей
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+public class UserR2dbcStorage implements ReactiveUserStorage {
+
+    private final DatabaseClient databaseClient;
+
+    public UserR2dbcStorage(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<User> get(int id) {
+        Flux<User> user = databaseClient.sql("SELECT * FROM users WHERE id = :id")
+                .bind("id", id)
+                .map(this::makeUser)
+                .all();
+        return withFriends(user)
+                .next()
+                .switchIfEmpty(Mono.error(() -> {
+                    log.error(LogMarkers.NOT_FOUND, "Пользователь с id = {} не найден", id);
+                    return new UserNotFoundException("Пользователь с id = " + id + " не найден");
+                }));
+    }
+
+    @Override
+    public Flux<User> findAll() {
+        return withFriends(databaseClient.sql("SELECT * FROM users ORDER BY id")
+                .map(this::makeUser)
+                .all());
+    }
+
+    @Override
+    public Flux<User> getCommonFriends(int userId, int otherId) {
+        String sql = "SELECT DISTINCT u.* " +
+                "FROM friendship AS f1 " +
+                "INNER JOIN friendship AS f2 ON f1.user_to = f2.user_to " +
+                "INNER JOIN users AS u ON u.id = f1.user_to " +
+                "WHERE f1.user_from = :userId " +
+                "AND f2.user_from = :otherId";
+        return databaseClient.sql(sql)
+                .bind("userId", userId)
+                .bind("otherId", otherId)
+                .map(this::makeUser)
+                .all();
+    }
+
+    @Override
+    public Flux<User> getUserFriends(int userId) {
+        String sql = "SELECT DISTINCT u.* " +
+                "FROM friendship AS f " +
+                "INNER JOIN users AS u ON u.id = f.user_to " +
+                "WHERE f.user_from = :userId";
+        return databaseClient.sql(sql)
+                .bind("userId", userId)
+                .map(this::makeUser)
+                .all();
+    }
+
+    private Flux<User> withFriends(Flux<User> users) {
+        return users.buffer(SqlChunks.IN_CHUNK_SIZE).concatMap(this::fillFriends, 1);
+    }
+
+    private Flux<User> fillFriends(List<User> users) {
+        Map<Integer, User> usersById = new HashMap<>();
+        for (User user : users) {
+            usersById.put(user.getId(), user);
+        }
+        return databaseClient.sql("SELECT f.user_from, f.user_to FROM friendship AS f " +
+                        "WHERE f.is_confirmed = TRUE " +
+                        "AND f.user_from IN (:ids) " +
+                        "ORDER BY f.user_from, f.user_to")
+                .bind("ids", new ArrayList<>(usersById.keySet()))
+                .map(row -> new int[]{row.get("user_from", Integer.class), row.get("user_to", Integer.class)})
+                .all()
+                .doOnNext(friendship -> usersById.get(friendship[0]).getFriends().addInt(friendship[1]))
+                .thenMany(Flux.fromIterable(users));
+    }
+
+    private User makeUser(Row row) {
+        return new User(
+                row.get("id", Integer.class),
+                row.get("email", String.class),
+                row.get("login", String.class),
+                row.get("name", String.class),
+                row.get("birthday", LocalDate.class),
+                new IntSet()
+        );
+    }
+}
@@ -0,0 +1,47 @@
+-- Перевод существующей файловой базы H2 на схему с ключами и индексами.
+-- Нужен только для баз, которые не пересоздаются schema.sql (spring.sql.init.mode=never).
+-- Скрипт идемпотентный: повторный запуск ничего не меняет. Промежуточные таблицы *_dedup удаляются
+-- и перед созданием, так что скрипт можно перезапустить и после сбоя посередине.
+
+ALTER TABLE film ADD COLUMN IF NOT EXISTS like_count INTEGER DEFAULT 0 NOT NULL;
+
+-- film_genre: убираем пустые строки и дубли, затем добавляем первичный ключ
+DELETE FROM film_genre WHERE film_id IS NULL OR genre_id IS NULL;
+DROP TABLE IF EXISTS film_genre_dedup;
+CREATE TABLE film_genre_dedup AS SELECT DISTINCT film_id, genre_id FROM film_genre;
+DELETE FROM film_genre;
+INSERT INTO film_genre(film_id, genre_id) SELECT film_id, genre_id FROM film_genre_dedup;
+DROP TABLE film_genre_dedup;
+ALTER TABLE film_genre ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE film_genre ALTER COLUMN genre_id SET NOT NULL;
+ALTER TABLE film_genre ADD CONSTRAINT IF NOT EXISTS film_genre_pk PRIMARY KEY (film_id, genre_id);
+CREATE INDEX IF NOT EXISTS film_genre_genre_idx ON film_genre (genre_id, film_id);
+
+-- favorite_films
+DELETE FROM favorite_films WHERE film_id IS NULL OR user_id IS NULL;
+DROP TABLE IF EXISTS favorite_films_dedup;
+CREATE TABLE favorite_films_dedup AS SELECT DISTINCT film_id, user_id FROM favorite_films;
+DELETE FROM favorite_films;
+INSERT INTO favorite_films(film_id, user_id) SELECT film_id, user_id FROM favorite_films_dedup;
+DROP TABLE favorite_films_dedup;
+ALTER TABLE favorite_films ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE favorite_films ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE favorite_films ADD CONSTRAINT IF NOT EXISTS favorite_films_pk PRIMARY KEY (film_id, user_id);
+CREATE INDEX IF NOT EXISTS favorite_films_user_idx ON favorite_films (user_id, film_id);
+
+-- friendship: из дублей с разным статусом сохраняется подтвержденная дружба
+DELETE FROM friendship WHERE user_from IS NULL OR user_to IS NULL;
+DROP TABLE IF EXISTS friendship_dedup;
+CREATE TABLE friendship_dedup AS
+SELECT user_from, user_to, BOOL_OR(is_confirmed) AS is_confirmed FROM friendship GROUP BY user_from, user_to;
+DELETE FROM friendship;
+INSERT INTO friendship(user_from, user_to, is_confirmed) SELECT user_from, user_to, is_confirmed FROM friendship_dedup;
+DROP TABLE friendship_dedup;
+ALTER TABLE friendship ALTER COLUMN user_from SET NOT NULL;
+ALTER TABLE friendship ALTER COLUMN user_to SET NOT NULL;
+ALTER TABLE friendship ADD CONSTRAINT IF NOT EXISTS friendship_pk PRIMARY KEY (user_from, user_to);
+CREATE INDEX IF NOT EXISTS friendship_user_to_idx ON friendship (user_to, user_from);
+
+-- счетчики лайков после удаления дублей
+CREATE INDEX IF NOT EXISTS film_like_count_idx ON film (like_count DESC, id);
+UPDATE film SET like_count = (SELECT COUNT(*) FROM favorite_films AS ff WHERE ff.film_id = film.id);
@@ -0,0 +1,9 @@
+-- Столбцы версии для условных GET (ETag и Last-Modified) в существующей файловой базе H2.
+-- Нужен только для баз, которые не пересоздаются schema.sql (spring.sql.init.mode=never).
+-- Скрипт идемпотентный: повторный запуск ничего не меняет.
+
+ALTER TABLE film ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE film ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL;
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL;
@@ -14,9 +14,14 @@ CREATE TABLE IF NOT EXISTS film (
 	duration INTEGER,
 	rate INTEGER,
 	rating_id INTEGER REFERENCES rating (id) ON DELETE CASCADE,
+	like_count INTEGER DEFAULT 0 NOT NULL,
+	version BIGINT DEFAULT 0 NOT NULL,
+	updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL,
 	CONSTRAINT films_pk PRIMARY KEY (id)
 );
 
+CREATE INDEX IF NOT EXISTS film_like_count_idx ON film (like_count DESC, id);
+
 CREATE TABLE IF NOT EXISTS genre (
 	id INTEGER GENERATED BY DEFAULT AS IDENTITY,
 	name VARCHAR(50),
@@ -25,26 +30,37 @@ CREATE TABLE IF NOT EXISTS genre (
 
 CREATE TABLE IF NOT EXISTS film_genre (
 	film_id INTEGER REFERENCES film (id) ON DELETE CASCADE,
-	genre_id INTEGER REFERENCES genre (id) ON DELETE CASCADE
+	genre_id INTEGER REFERENCES genre (id) ON DELETE CASCADE,
+	CONSTRAINT film_genre_pk PRIMARY KEY (film_id, genre_id)
 );
 
+CREATE INDEX IF NOT EXISTS film_genre_genre_idx ON film_genre (genre_id, film_id);
+
 CREATE TABLE IF NOT EXISTS users (
 	id INTEGER GENERATED BY DEFAULT AS IDENTITY,
 	email VARCHAR(100) NOT NULL,
 	login VARCHAR(50) NOT NULL,
 	name VARCHAR(100) NOT NULL,
 	birthday date,
+	version BIGINT DEFAULT 0 NOT NULL,
+	updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL,
 	CONSTRAINT users_pk PRIMARY KEY (id),
 	CONSTRAINT login_users_uc UNIQUE (login)
 );
 
 CREATE TABLE IF NOT EXISTS favorite_films (
 	film_id INTEGER REFERENCES film (id) ON DELETE CASCADE,
-	user_id INTEGER REFERENCES users (id) ON DELETE CASCADE
+	user_id INTEGER REFERENCES users (id) ON DELETE CASCADE,
+	CONSTRAINT favorite_films_pk PRIMARY KEY (film_id, user_id)
 );
 
+CREATE INDEX IF NOT EXISTS favorite_films_user_idx ON favorite_films (user_id, film_id);
+
 CREATE TABLE IF NOT EXISTS friendship (
 	user_from INTEGER REFERENCES users (id) ON DELETE CASCADE,
 	user_to INTEGER REFERENCES users (id) ON DELETE CASCADE,
-	is_confirmed BOOLEAN NOT NULL
+	is_confirmed BOOLEAN NOT NULL,
+	CONSTRAINT friendship_pk PRIMARY KEY (user_from, user_to)
 );
+
+CREATE INDEX IF NOT EXISTS friendship_user_to_idx ON friendship (user_to, user_from);
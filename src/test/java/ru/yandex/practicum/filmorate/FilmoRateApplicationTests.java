@@ -7,17 +7,40 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.GenreNotFoundException;
+import ru.yandex.practicum.filmorate.exception.MpaNotFoundException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.BulkImportService;
+import ru.yandex.practicum.filmorate.storage.FriendIndex;
 import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
 import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
 
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.*;
@@ -29,8 +52,11 @@ import static org.junit.jupiter.api.Assertions.*;
 class FilmoRateApplicationTests {
 	private final UserDbStorage userStorage;
 	private final FilmDbStorage filmStorage;
+	private final BulkImportService bulkImportService;
+	private final TransactionOperations transactions;
 
 	private final JdbcTemplate jdbcTemplate;
+	private final DataSource dataSource;
 
 	@AfterEach
 	public void afterTest() {
@@ -376,8 +402,415 @@ class FilmoRateApplicationTests {
 		assertEquals(0, updatedFilm.getGenres().size());
 	}
 
+	@Test
+	public void testFindAllFilmsRunsFixedNumberOfQueries() {
+		User user = userStorage.create(User.builder()
+				.login("login")
+				.birthday(LocalDate.of(1987, 01, 01))
+				.email("mail@ya.ru")
+				.name("name")
+				.build());
+		AtomicInteger statements = new AtomicInteger();
+		FilmDbStorage countingStorage = new FilmDbStorage(new JdbcTemplate(countingDataSource(statements)));
+		// справочники грузятся лениво при первом обращении — прогреваем заранее, чтобы не считать их запросы
+		countingStorage.refreshReferenceData();
+
+		createFilmsWithGenresAndLikes(2, user);
+		statements.set(0);
+		assertEquals(2, countingStorage.findAll().size());
+		int queriesForFewFilms = statements.get();
+
+		createFilmsWithGenresAndLikes(30, user);
+		statements.set(0);
+		List<Film> films = countingStorage.findAll();
+		assertEquals(32, films.size());
+		assertEquals(queriesForFewFilms, statements.get());
+		assertEquals(3, statements.get());
+		for (Film film : films) {
+			assertEquals(2, film.getGenres().size());
+			assertEquals(Set.of(user.getId()), film.getLikes());
+		}
+
+		statements.set(0);
+		Film film = countingStorage.get(films.get(0).getId());
+		assertEquals(2, film.getGenres().size());
+		assertEquals(3, statements.get());
+	}
+
+	@Test
+	public void testStreamAllHydratesChunksOnCursorConnection() {
+		User user = userStorage.create(User.builder()
+				.login("login")
+				.birthday(LocalDate.of(1987, 01, 01))
+				.email("mail@ya.ru")
+				.name("name")
+				.build());
+		createFilmsWithGenresAndLikes(501, user);
+		Set<Connection> connections = new HashSet<>();
+		AtomicInteger streamed = new AtomicInteger();
+
+		filmStorage.streamAll(film -> {
+			assertTrue(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+			assertEquals(2, film.getGenres().size());
+			connections.add(DataSourceUtils.getConnection(dataSource));
+			streamed.incrementAndGet();
+		});
+		assertEquals(501, streamed.get());
+		assertEquals(1, connections.size());
+
+		userStorage.streamAll(streamedUser -> {
+			assertTrue(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+			streamed.incrementAndGet();
+		});
+		assertEquals(502, streamed.get());
+	}
+
+	@Test
+	public void testPopularFilmsAndReconcileLikeCounts() {
+		User user1 = userStorage.create(User.builder()
+				.login("login")
+				.birthday(LocalDate.of(1987, 01, 01))
+				.email("mail@ya.ru")
+				.name("name")
+				.build());
+		User user2 = userStorage.create(User.builder()
+				.login("login2")
+				.birthday(LocalDate.of(1987, 01, 01))
+				.email("mail2@ya.ru")
+				.name("name2")
+				.build());
+		createFilmsWithGenresAndLikes(3, user1);
+		List<Film> films = filmStorage.findAll();
+		Film mostPopular = films.get(2);
+		filmStorage.likeFilm(mostPopular, user2);
+		filmStorage.dislikeFilm(films.get(1), user1);
+
+		List<Film> popular = filmStorage.getPopularFilms(2);
+		assertEquals(2, popular.size());
+		assertEquals(mostPopular.getId(), popular.get(0).getId());
+		assertEquals(2, popular.get(0).getLikes().size());
+		assertEquals(0, filmStorage.reconcileLikeCounts());
+
+		jdbcTemplate.update("UPDATE film SET like_count = 100 WHERE id = ?", films.get(1).getId());
+		assertEquals(films.get(1).getId(), filmStorage.getPopularFilms(1).get(0).getId());
+		assertEquals(1, filmStorage.reconcileLikeCounts());
+		assertEquals(mostPopular.getId(), filmStorage.getPopularFilms(1).get(0).getId());
+	}
+
+	@Test
+	public void testDeleteUserDecrementsLikeCounts() {
+		User user1 = userStorage.create(User.builder()
+				.login("login")
+				.birthday(LocalDate.of(1987, 01, 01))
+				.email("mail@ya.ru")
+				.name("name")
+				.build());
+		User user2 = userStorage.create(User.builder()
+				.login("login2")
+				.birthday(LocalDate.of(1987, 01, 01))
+				.email("mail2@ya.ru")
+				.name("name2")
+				.build());
+		createFilmsWithGenresAndLikes(2, user1);
+		List<Film> films = filmStorage.findAll();
+		filmStorage.likeFilm(films.get(0), user2);
+		assertEquals(Set.of(films.get(0).getId(), films.get(1).getId()), filmStorage.getLikedFilmIds(user1.getId()));
+
+		userStorage.delete(user1);
+
+		assertEquals(Map.of(films.get(0).getId(), 1, films.get(1).getId(), 0),
+				filmStorage.getLikeCounts(List.of(films.get(0).getId(), films.get(1).getId())));
+		assertEquals(0, filmStorage.reconcileLikeCounts());
+		assertTrue(filmStorage.getLikedFilmIds(user1.getId()).isEmpty());
+	}
+
+	@Test
+	public void testReferenceDataIsServedWithoutQueries() {
+		AtomicInteger statements = new AtomicInteger();
+		FilmDbStorage countingStorage = new FilmDbStorage(new JdbcTemplate(countingDataSource(statements)));
+		countingStorage.refreshReferenceData();
+		assertEquals(2, statements.get());
+
+		statements.set(0);
+		assertEquals("Комедия", countingStorage.getGenre(1).getName());
+		assertEquals("G", countingStorage.getMpa(1).getName());
+		assertEquals(6, countingStorage.findAllGenres().size());
+		assertEquals(5, countingStorage.findAllMpa().size());
+		assertThrows(GenreNotFoundException.class, () -> countingStorage.getGenre(999));
+		assertThrows(MpaNotFoundException.class, () -> countingStorage.getMpa(-1));
+		assertEquals(0, statements.get());
+
+		countingStorage.invalidateReferenceData();
+		countingStorage.findAllGenres();
+		assertEquals(2, statements.get());
+	}
+
+	@Test
+	public void testGenreWritesRunFixedNumberOfQueries() {
+		AtomicInteger statements = new AtomicInteger();
+		FilmDbStorage countingStorage = new FilmDbStorage(new JdbcTemplate(countingDataSource(statements)));
+		countingStorage.refreshReferenceData();
+		Film film = countingStorage.create(Film.builder()
+				.name("name")
+				.description("description")
+				.rate(1)
+				.duration(100)
+				.releaseDate(LocalDate.of(2020, 01, 01))
+				.mpa(Mpa.builder().id(1).build())
+				.genres(new HashSet<>(List.of(Genre.builder().id(1).build(), Genre.builder().id(2).build())))
+				.build());
+
+		film.setGenres(new HashSet<>(List.of(Genre.builder().id(2).build())));
+		statements.set(0);
+		Film updated = countingStorage.update(film);
+		int queriesForOneGenre = statements.get();
+		assertEquals(Set.of(2), updated.getGenres().stream().map(Genre::getId).collect(Collectors.toSet()));
+
+		film.setGenres(new HashSet<>(List.of(Genre.builder().id(2).build(), Genre.builder().id(3).build(),
+				Genre.builder().id(4).build(), Genre.builder().id(5).build(), Genre.builder().id(999).build())));
+		statements.set(0);
+		updated = countingStorage.update(film);
+		assertEquals(queriesForOneGenre, statements.get());
+		assertEquals(Set.of(2, 3, 4, 5), updated.getGenres().stream().map(Genre::getId).collect(Collectors.toSet()));
+	}
+
+	@Test
+	public void testFindAllUsersRunsFixedNumberOfQueries() {
+		AtomicInteger statements = new AtomicInteger();
+		UserDbStorage countingStorage = new UserDbStorage(new JdbcTemplate(countingDataSource(statements)));
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			users.add(userStorage.create(User.builder()
+					.login("login" + i)
+					.birthday(LocalDate.of(1987, 01, 01))
+					.email("mail" + i + "@ya.ru")
+					.name("name" + i)
+					.build()));
+		}
+		for (int i = 1; i < users.size(); i++) {
+			userStorage.addFriend(users.get(0).getId(), users.get(i).getId());
+			userStorage.addFriend(users.get(i).getId(), users.get(0).getId());
+		}
+		jdbcTemplate.update("UPDATE friendship SET is_confirmed = TRUE");
+
+		statements.set(0);
+		List<User> found = countingStorage.findAll();
+		assertEquals(20, found.size());
+		assertEquals(2, statements.get());
+		assertEquals(19, found.get(0).getFriends().size());
+		assertEquals(Set.of(users.get(0).getId()), found.get(5).getFriends());
+
+		statements.set(0);
+		assertEquals(19, countingStorage.findPage(0, 10).get(0).getFriends().size());
+		assertEquals(2, statements.get());
+
+		statements.set(0);
+		assertEquals(19, countingStorage.get(users.get(0).getId()).getFriends().size());
+		assertEquals(2, statements.get());
+
+		statements.set(0);
+		assertTrue(countingStorage.getWithoutFriends(users.get(0).getId()).getFriends().isEmpty());
+		assertEquals(1, statements.get());
+	}
+
+	@Test
+	public void testCommonFriendsFromIndexMatchesTable() {
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			users.add(userStorage.create(User.builder()
+					.login("login" + i)
+					.birthday(LocalDate.of(1987, 01, 01))
+					.email("mail" + i + "@ya.ru")
+					.name("name" + i)
+					.build()));
+		}
+		for (int i = 2; i < 5; i++) {
+			userStorage.addFriend(users.get(0).getId(), users.get(i).getId());
+		}
+		userStorage.addFriend(users.get(1).getId(), users.get(3).getId());
+		userStorage.addFriend(users.get(1).getId(), users.get(4).getId());
+
+		userStorage.rebuildFriendIndex();
+		List<User> common = userStorage.getCommonFriends(users.get(0).getId(), users.get(1).getId());
+		assertEquals(List.of(users.get(3).getId(), users.get(4).getId()),
+				common.stream().map(User::getId).collect(Collectors.toList()));
+
+		userStorage.removeFriend(users.get(1).getId(), users.get(4).getId());
+		userStorage.addFriend(users.get(1).getId(), users.get(2).getId());
+		common = userStorage.getCommonFriends(users.get(0).getId(), users.get(1).getId());
+		assertEquals(List.of(users.get(2).getId(), users.get(3).getId()),
+				common.stream().map(User::getId).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void testFriendIndexIgnoresRolledBackChanges() {
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			users.add(userStorage.create(User.builder()
+					.login("login" + i)
+					.birthday(LocalDate.of(1987, 01, 01))
+					.email("mail" + i + "@ya.ru")
+					.name("name" + i)
+					.build()));
+		}
+		int first = users.get(0).getId();
+		int second = users.get(1).getId();
+		int third = users.get(2).getId();
+		userStorage.addFriend(first, second);
+		userStorage.rebuildFriendIndex();
+
+		transactions.executeWithoutResult(status -> {
+			userStorage.addFriend(first, third);
+			userStorage.removeFriend(first, second);
+			userStorage.addFriendships(List.of(new int[]{second, third}));
+			assertTrue(userStorage.getFriendIndex().contains(first, second));
+			status.setRollbackOnly();
+		});
+
+		FriendIndex index = userStorage.getFriendIndex();
+		assertTrue(index.contains(first, second));
+		assertFalse(index.contains(first, third));
+		assertFalse(index.contains(second, third));
+
+		transactions.executeWithoutResult(status -> userStorage.addFriend(first, third));
+		assertTrue(index.contains(first, third));
+	}
+
+	@Test
+	public void testBulkImportFallsBackToSingleRowsOnDuplicateLogin() throws IOException {
+		String users = "email,login,name,birthday\n" +
+				"a@ya.ru,first,,1990-01-01\n" +
+				"b@ya.ru,second,Второй,1990-01-01\n" +
+				"c@ya.ru,first,Дубль,1990-01-01\n";
+
+		BulkImportResult result = bulkImportService.importUsers(
+				new ByteArrayInputStream(users.getBytes(StandardCharsets.UTF_8)), BulkImportService.Format.CSV);
+
+		assertEquals(2, result.getRowsImported());
+		assertEquals(1, result.getRowsFailed());
+		assertEquals(4, result.getErrors().get(0).getLine());
+		List<User> created = userStorage.findAll();
+		assertThat(created).extracting(User::getName).containsExactlyInAnyOrder("first", "Второй");
+
+		Film film = filmStorage.create(Film.builder()
+				.name("film")
+				.releaseDate(LocalDate.of(2000, 1, 1))
+				.description("description")
+				.duration(100)
+				.mpa(Mpa.builder().id(1).build())
+				.build());
+		String likes = created.stream()
+				.map(u -> "{\"filmId\":" + film.getId() + ",\"userId\":" + u.getId() + "}")
+				.collect(Collectors.joining("\n")) + "\n{\"filmId\":" + film.getId() + ",\"userId\":" + created.get(0).getId() + "}";
+
+		result = bulkImportService.importLikes(
+				new ByteArrayInputStream(likes.getBytes(StandardCharsets.UTF_8)), BulkImportService.Format.NDJSON);
+
+		// повторный лайк не вставляется и в отчет не попадает
+		assertEquals(2, result.getRowsImported());
+		assertEquals(0, result.getRowsFailed());
+		assertEquals(2, jdbcTemplate.queryForObject("SELECT like_count FROM film WHERE id = ?", Integer.class, film.getId()));
+	}
+
+	@Test
+	public void testParallelDuplicateLikesAndFriendRequestsAreStoredOnce() throws Exception {
+		User user = userStorage.create(User.builder()
+				.login("login1")
+				.birthday(LocalDate.of(1987, 01, 01))
+				.email("mail1@ya.ru")
+				.name("name1")
+				.build());
+		User friend = userStorage.create(User.builder()
+				.login("login2")
+				.birthday(LocalDate.of(1987, 01, 01))
+				.email("mail2@ya.ru")
+				.name("name2")
+				.build());
+		Film film = filmStorage.create(Film.builder()
+				.name("name")
+				.description("description")
+				.duration(100)
+				.releaseDate(LocalDate.of(2020, 01, 01))
+				.mpa(Mpa.builder().id(1).build())
+				.build());
+		int threads = 16;
+		AtomicInteger likesInserted = new AtomicInteger();
+		AtomicInteger friendshipsInserted = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				if (filmStorage.likeFilm(film, user)) {
+					likesInserted.incrementAndGet();
+				}
+				if (userStorage.addFriend(user.getId(), friend.getId())) {
+					friendshipsInserted.incrementAndGet();
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+
+		assertEquals(1, likesInserted.get());
+		assertEquals(1, friendshipsInserted.get());
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM favorite_films", Integer.class));
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT like_count FROM film WHERE id = ?", Integer.class, film.getId()));
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM friendship", Integer.class));
+		assertEquals(Set.of(user.getId()), filmStorage.get(film.getId()).getLikes());
+
+		assertTrue(filmStorage.dislikeFilm(film, user));
+		assertFalse(filmStorage.dislikeFilm(film, user));
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT like_count FROM film WHERE id = ?", Integer.class, film.getId()));
+		assertTrue(userStorage.removeFriend(user.getId(), friend.getId()));
+		assertFalse(userStorage.removeFriend(user.getId(), friend.getId()));
+	}
+
+	private void createFilmsWithGenresAndLikes(int count, User user) {
+		for (int i = 0; i < count; i++) {
+			Film film = filmStorage.create(Film.builder()
+					.name("name" + i)
+					.description("description" + i)
+					.rate(1)
+					.duration(100)
+					.releaseDate(LocalDate.of(2020, 01, 01))
+					.mpa(Mpa.builder().id(1).build())
+					.genres(new HashSet<>(List.of(Genre.builder().id(1).build(), Genre.builder().id(2).build())))
+					.build());
+			filmStorage.likeFilm(film, user);
+		}
+	}
+
+	// считает подготовленные JDBC-выражения, выполненные через возвращаемый DataSource
+	private DataSource countingDataSource(AtomicInteger statements) {
+		return new DelegatingDataSource(dataSource) {
+			@Override
+			public Connection getConnection() throws SQLException {
+				Connection connection = super.getConnection();
+				return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+						new Class<?>[]{Connection.class},
+						(proxy, method, args) -> {
+							if (method.getName().startsWith("prepare") || method.getName().equals("createStatement")) {
+								statements.incrementAndGet();
+							}
+							try {
+								return method.invoke(connection, args);
+							} catch (InvocationTargetException e) {
+								throw e.getCause();
+							}
+						});
+			}
+		};
+	}
+
 	private void clearDb() {
 		String sqlQuery = "DELETE FROM users";
 		jdbcTemplate.update(sqlQuery);
+		jdbcTemplate.update("DELETE FROM film");
 	}
 }
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadsConfigurationTest {
+
+    @Test
+    void virtualThreadsAreUsedOnlyWhenJvmSupportsThem() throws Exception {
+        Optional<ExecutorService> executor = VirtualThreadsConfiguration.newVirtualThreadExecutor();
+
+        assertEquals(Runtime.version().feature() >= 21, executor.isPresent());
+        if (executor.isPresent()) {
+            Future<Boolean> virtual = executor.get().submit(() ->
+                    (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+            assertTrue(virtual.get());
+            executor.get().shutdown();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// файловая H2 с маленьким кэшем, чтобы выгрузка не упиралась в память самой базы.
+// Прогон на миллионе строк под маленьким -Xmx: mvn test -Pexport-stress
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:file:./target/export-test/filmorate;CACHE_SIZE=8192")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ExportControllerTest {
+    private static final int ROWS = Integer.getInteger("filmorate.export.test-rows", 5_000);
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    private final ExportController exportController;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @AfterEach
+    public void afterTest() {
+        jdbcTemplate.update("DELETE FROM film");
+    }
+
+    @Test
+    void exportFilmsWritesOneLinePerFilm() throws IOException {
+        seedFilms(ROWS);
+        LineCountingOutputStream out = new LineCountingOutputStream();
+
+        exportController.exportFilms(false).getBody().writeTo(out);
+
+        assertEquals(ROWS, out.lines);
+    }
+
+    @Test
+    void exportFilmsWithGzip() throws IOException {
+        seedFilms(10);
+        ResponseEntity<StreamingResponseBody> response = exportController.exportFilms(true);
+        assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        response.getBody().writeTo(bytes);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray())), StandardCharsets.UTF_8))) {
+            List<String> lines = reader.lines().collect(Collectors.toList());
+            assertEquals(10, lines.size());
+            Film first = objectMapper.readValue(lines.get(0), Film.class);
+            assertEquals("name0", first.getName());
+            assertEquals(1, first.getMpa().getId());
+        }
+    }
+
+    private void seedFilms(int count) {
+        String sql = "INSERT INTO film(name, release_date, description, duration, rating_id, rate) " +
+                "values (?, ?, ?, ?, ?, ?)";
+        for (int from = 0; from < count; from += SEED_BATCH_SIZE) {
+            int start = from;
+            int size = Math.min(SEED_BATCH_SIZE, count - from);
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setString(1, "name" + (start + i));
+                    ps.setDate(2, Date.valueOf(LocalDate.of(2020, 1, 1)));
+                    ps.setString(3, "description");
+                    ps.setInt(4, 100);
+                    ps.setInt(5, 1);
+                    ps.setInt(6, 1);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+
+    private static class LineCountingOutputStream extends OutputStream {
+        private int lines;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -9,6 +10,7 @@ import ru.yandex.practicum.filmorate.storage.impl.InMemoryFilmStorage;
 import ru.yandex.practicum.filmorate.storage.impl.InMemoryUserStorage;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -233,6 +235,30 @@ class FilmControllerTest {
         assertEquals(2, filmController.findAll().size());
     }
 
+    @Test
+    public void findPage() {
+        for (int i = 0; i < 5; i++) {
+            filmController.create(Film.builder()
+                    .name("name" + i)
+                    .rate(1)
+                    .description("description")
+                    .duration(100)
+                    .releaseDate(LocalDate.of(2000, 12, 28))
+                    .build());
+        }
+
+        ResponseEntity<List<Film>> firstPage = filmController.findPage(2, 0);
+        assertEquals(2, firstPage.getBody().size());
+        String cursor = firstPage.getHeaders().getFirst(FilmController.NEXT_CURSOR_HEADER);
+        assertEquals(String.valueOf(firstPage.getBody().get(1).getId()), cursor);
+
+        ResponseEntity<List<Film>> lastPage = filmController.findPage(4, Integer.parseInt(cursor));
+        assertEquals(3, lastPage.getBody().size());
+        assertNull(lastPage.getHeaders().getFirst(FilmController.NEXT_CURSOR_HEADER));
+
+        assertThrows(ValidationException.class, () -> filmController.findPage(0, 0));
+    }
+
     @Test
     public void createWithNullBody() {
         final NullPointerException exception = assertThrows(
@@ -1,18 +1,24 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.impl.InMemoryFilmStorage;
 import ru.yandex.practicum.filmorate.storage.impl.InMemoryUserStorage;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class UserControllerTest {
-    private final UserController userController = new UserController(new UserService(new InMemoryUserStorage()));
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage();
+    private final UserController userController = new UserController(
+            new UserService(userStorage, new FilmService(new InMemoryFilmStorage(), userStorage)));
 
     @Test
     void create() {
@@ -220,4 +226,49 @@ class UserControllerTest {
 
         assertEquals(2, userController.findAll().size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void findPage() {
+        for (int i = 0; i < 3; i++) {
+            userController.create(User.builder()
+                    .email("email" + i + "@ya.ru")
+                    .login("userLogin" + i)
+                    .birthday(LocalDate.of(2000, 01, 01))
+                    .name("userName" + i)
+                    .build());
+        }
+
+        ResponseEntity<List<User>> firstPage = userController.findPage(2, 0);
+        assertEquals(2, firstPage.getBody().size());
+        String cursor = firstPage.getHeaders().getFirst(FilmController.NEXT_CURSOR_HEADER);
+        assertNotNull(cursor);
+
+        ResponseEntity<List<User>> lastPage = userController.findPage(2, Integer.parseInt(cursor));
+        assertEquals(1, lastPage.getBody().size());
+        assertEquals("userLogin2", lastPage.getBody().get(0).getLogin());
+        assertNull(lastPage.getHeaders().getFirst(FilmController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void getFriendSuggestions() {
+        for (int i = 1; i <= 5; i++) {
+            userController.create(User.builder()
+                    .email("email" + i + "@ya.ru")
+                    .login("userLogin" + i)
+                    .birthday(LocalDate.of(2000, 01, 01))
+                    .name("userName" + i)
+                    .build());
+        }
+        userController.addFriend(1, 2);
+        userController.addFriend(1, 3);
+        userController.addFriend(2, 4);
+        userController.addFriend(3, 4);
+        userController.addFriend(3, 5);
+
+        List<User> suggestions = userController.getFriendSuggestions(1, 10);
+        assertEquals(List.of(4, 5), List.of(suggestions.get(0).getId(), suggestions.get(1).getId()));
+        assertEquals(1, userController.getFriendSuggestions(1, 1).size());
+        assertThrows(ValidationException.class, () -> userController.getFriendSuggestions(1, 0));
+        assertThrows(UserNotFoundException.class, () -> userController.getFriendSuggestions(42, 10));
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.JsonTest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.filmorate.config.JsonConfiguration;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ручные сериализаторы должны выдавать те же байты, что и сериализация Jackson по умолчанию;
+// оба маппера собираются тем же билдером, что настраивает Spring Boot в приложении
+@JsonTest
+class ModelSerializersTest {
+    private final ObjectMapper reflective;
+    private final ObjectMapper fast;
+
+    @Autowired
+    ModelSerializersTest(Jackson2ObjectMapperBuilder builder) {
+        reflective = builder.build();
+        fast = builder.build();
+        fast.registerModule(new JsonConfiguration().filmorateJsonModule());
+    }
+
+    @Test
+    void filmMatchesDefaultSerialization() throws Exception {
+        Film film = Film.builder()
+                .id(7)
+                .name("Фильм \"в кавычках\"")
+                .releaseDate(LocalDate.of(1999, 3, 31))
+                .description("описание\nв две строки")
+                .duration(136)
+                .rate(4)
+                .mpa(new Mpa(4, "R"))
+                .genres(new LinkedHashSet<>(List.of(new Genre(2, "Драма"), new Genre(6, "Боевик"))))
+                .likes(IntSet.of(1, 5, 42))
+                .build();
+
+        assertSameJson(film);
+        assertSameJson(List.of(film, film));
+    }
+
+    @Test
+    void filmWithEmptyAndNullFieldsMatchesDefaultSerialization() throws Exception {
+        Film film = Film.builder().name("name").build();
+        assertSameJson(film);
+
+        film.setGenres(null);
+        film.setLikes(null);
+        assertSameJson(film);
+    }
+
+    @Test
+    void userMatchesDefaultSerialization() throws Exception {
+        User user = User.builder()
+                .id(3)
+                .email("mail@ya.ru")
+                .login("login")
+                .name("Имя")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .friends(IntSet.of(2, 9))
+                .build();
+        assertSameJson(user);
+
+        user.setName(null);
+        user.setBirthday(null);
+        user.setFriends(new IntSet());
+        assertSameJson(user);
+    }
+
+    @Test
+    void serializedFilmReadsBack() throws Exception {
+        Film film = Film.builder()
+                .id(1)
+                .name("name")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .mpa(new Mpa(1, "G"))
+                .likes(IntSet.of(3, 1))
+                .build();
+
+        Film read = fast.readValue(fast.writeValueAsBytes(film), Film.class);
+
+        assertEquals(film, read);
+    }
+
+    private void assertSameJson(Object value) throws Exception {
+        assertEquals(reflective.writeValueAsString(value), fast.writeValueAsString(value));
+    }
+}
@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestLogSamplerTest {
+    private static final String PREFIX = "ru.yandex.practicum.filmorate.controller.";
+
+    private final LoggerContext context = new LoggerContext();
+    private final Logger controllerLogger = context.getLogger(PREFIX + "FilmController");
+
+    @AfterEach
+    public void afterTest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void handlerWithSampledLogIsLoggedOncePerRate() throws Exception {
+        RequestLogSampler sampler = new RequestLogSampler(PREFIX, 1);
+        inHandler("sampled");
+
+        assertEquals(4, logged(sampler, controllerLogger, Level.INFO, "Получен запрос GET /films/{id}", 20));
+    }
+
+    @Test
+    void handlerWithoutSampledLogUsesDefaultRate() throws Exception {
+        inHandler("unsampled");
+
+        assertEquals(20, logged(new RequestLogSampler(PREFIX, 1), controllerLogger, Level.INFO, "запрос", 20));
+        assertEquals(10, logged(new RequestLogSampler(PREFIX, 2), controllerLogger, Level.INFO, "запрос", 20));
+    }
+
+    @Test
+    void otherLevelsAndLoggersAreNotSampled() {
+        RequestLogSampler sampler = new RequestLogSampler(PREFIX, 100);
+
+        assertEquals(20, logged(sampler, controllerLogger, Level.WARN, "предупреждение", 20));
+        assertEquals(20, logged(sampler, context.getLogger("ru.yandex.practicum.filmorate.service.FilmService"),
+                Level.INFO, "сервис", 20));
+    }
+
+    @Test
+    void notFoundMessagesAreLimitedPerSecond() {
+        NotFoundLogLimiter limiter = new NotFoundLogLimiter(3);
+        int logged = 0;
+        for (int i = 0; i < 100; i++) {
+            if (limiter.decide(LogMarkers.NOT_FOUND, controllerLogger, Level.ERROR, "Фильм с id = {} не найден",
+                    new Object[]{i}, null) == FilterReply.NEUTRAL) {
+                logged++;
+            }
+        }
+
+        // на границе секунды лимит может начаться заново
+        assertTrue(logged >= 3 && logged <= 6, "Записано " + logged);
+        assertEquals(FilterReply.NEUTRAL, limiter.decide(null, controllerLogger, Level.ERROR, "ошибка", null, null));
+    }
+
+    private static int logged(RequestLogSampler sampler, Logger logger, Level level, String format, int times) {
+        int logged = 0;
+        for (int i = 0; i < times; i++) {
+            if (sampler.decide(null, logger, level, format, null, null) == FilterReply.NEUTRAL) {
+                logged++;
+            }
+        }
+        return logged;
+    }
+
+    private static void inHandler(String handlerMethod) throws NoSuchMethodException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/1");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE,
+                new HandlerMethod(new Handlers(), Handlers.class.getMethod(handlerMethod)));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    public static class Handlers {
+        @SampledLog(5)
+        public void sampled() {
+        }
+
+        public void unsampled() {
+        }
+    }
+}
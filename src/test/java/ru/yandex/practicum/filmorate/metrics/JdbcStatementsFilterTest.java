@@ -0,0 +1,168 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.yandex.practicum.filmorate.exception.QueryBudgetExceededException;
+import ru.yandex.practicum.filmorate.storage.SqlChunks;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcStatementsFilterTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void requestOverBudgetFailsWithFingerprints() {
+        JdbcStatementsFilter filter = filter(QueryBudgetProperties.Mode.FAIL);
+
+        QueryBudgetExceededException e = assertThrows(QueryBudgetExceededException.class,
+                () -> run(filter, "budgeted", chainRunning(3, "SELECT * FROM film WHERE id = ?")));
+
+        assertTrue(e.getMessage().contains("3 SQL-выражений при бюджете 2"), e.getMessage());
+        assertTrue(e.getMessage().contains("3 x SELECT * FROM film WHERE id = ?"), e.getMessage());
+        assertEquals(3.0, registry.get(JdbcStatementsFilter.METRIC).summary().totalAmount());
+    }
+
+    @Test
+    void requestOverBudgetOnlyWarnsInWarnMode() throws Exception {
+        run(filter(QueryBudgetProperties.Mode.WARN), "budgeted", chainRunning(3, "SELECT * FROM film WHERE id = ?"));
+
+        assertEquals(1, registry.get(JdbcStatementsFilter.METRIC).summary().count());
+    }
+
+    @Test
+    void requestWithinBudgetPasses() throws Exception {
+        run(filter(QueryBudgetProperties.Mode.FAIL), "budgeted", chainRunning(2, "SELECT * FROM film WHERE id = ?"));
+    }
+
+    @Test
+    void repeatedStatementWithoutBudgetIsReportedAsNPlusOne() {
+        JdbcStatementsFilter filter = filter(QueryBudgetProperties.Mode.FAIL);
+        FilterChain chain = (request, response) -> {
+            for (int i = 0; i < 5; i++) {
+                JdbcStatementCounter.record("SELECT film_id, genre_id FROM film_genre WHERE film_id IN (?, ?)");
+                JdbcStatementCounter.record("SELECT   film_id, user_id FROM favorite_films WHERE film_id = " + i);
+            }
+        };
+
+        QueryBudgetExceededException e = assertThrows(QueryBudgetExceededException.class,
+                () -> run(filter, "unbudgeted", chain));
+
+        assertTrue(e.getMessage().contains("возможен N+1"), e.getMessage());
+        assertTrue(e.getMessage().contains("5 x SELECT film_id, user_id FROM favorite_films WHERE film_id = ?"),
+                e.getMessage());
+    }
+
+    @Test
+    void chunkContinuationsExtendBudgetAndAreNotRepeats() throws Exception {
+        String fullChunk = fullChunk("SELECT * FROM film_genre WHERE film_id IN (");
+        FilterChain chain = (request, response) -> {
+            JdbcStatementCounter.record("SELECT * FROM film ORDER BY id");
+            for (int i = 0; i < 6; i++) {
+                JdbcStatementCounter.record(fullChunk);
+            }
+            JdbcStatementCounter.record("SELECT * FROM film_genre WHERE film_id IN (?, ?)");
+        };
+
+        run(filter(QueryBudgetProperties.Mode.FAIL), "budgeted", chain);
+        run(filter(QueryBudgetProperties.Mode.FAIL), "unbudgeted", chain);
+
+        QueryBudgetExceededException e = assertThrows(QueryBudgetExceededException.class,
+                () -> run(filter(QueryBudgetProperties.Mode.FAIL), "budgeted", (request, response) -> {
+                    chain.doFilter(request, response);
+                    JdbcStatementCounter.record("SELECT * FROM favorite_films WHERE film_id = ?");
+                }));
+        assertTrue(e.getMessage().contains("9 SQL-выражений при бюджете 2 и продолжениях порций IN: 6"), e.getMessage());
+    }
+
+    @Test
+    void loopsOverLongInListsAreReportedAsNPlusOne() {
+        String fullChunk = fullChunk("SELECT * FROM favorite_films WHERE user_id IN (");
+        FilterChain chunkedReads = (request, response) -> {
+            for (int i = 0; i < 5; i++) {
+                JdbcStatementCounter.record(fullChunk);
+                JdbcStatementCounter.record("SELECT * FROM favorite_films WHERE user_id IN (?, ?)");
+            }
+        };
+        // список длиннее порции - не порция хранилища, и бюджет он не увеличивает
+        String longList = "SELECT * FROM film WHERE id IN (" +
+                String.join(", ", Collections.nCopies(SqlChunks.IN_CHUNK_SIZE + 100, "?")) + ")";
+        FilterChain longLists = (request, response) -> {
+            for (int i = 0; i < 5; i++) {
+                JdbcStatementCounter.record(longList);
+            }
+        };
+
+        QueryBudgetExceededException e = assertThrows(QueryBudgetExceededException.class,
+                () -> run(filter(QueryBudgetProperties.Mode.FAIL), "unbudgeted", chunkedReads));
+        assertTrue(e.getMessage().contains("возможен N+1"), e.getMessage());
+        assertTrue(e.getMessage().contains("10 x SELECT * FROM favorite_films WHERE user_id IN (?)"), e.getMessage());
+
+        e = assertThrows(QueryBudgetExceededException.class,
+                () -> run(filter(QueryBudgetProperties.Mode.FAIL), "unbudgeted", longLists));
+        assertTrue(e.getMessage().contains("повторил одно SQL-выражение 5 раз"), e.getMessage());
+    }
+
+    @Test
+    void unlimitedEndpointIsNotChecked() throws Exception {
+        run(filter(QueryBudgetProperties.Mode.FAIL), "unlimited", chainRunning(10, "INSERT INTO film VALUES (?)"));
+    }
+
+    @Test
+    void fingerprintDropsLiteralsAndParameterLists() {
+        assertEquals("SELECT * FROM film WHERE id IN (?) AND name = ? LIMIT ?",
+                JdbcStatementCounter.fingerprint("SELECT *  FROM film\nWHERE id IN (?, ?,?) AND name = 'it''s' LIMIT 10"));
+    }
+
+    private static String fullChunk(String prefix) {
+        return prefix + String.join(", ", Collections.nCopies(SqlChunks.IN_CHUNK_SIZE, "?")) + ")";
+    }
+
+    private JdbcStatementsFilter filter(QueryBudgetProperties.Mode mode) {
+        QueryBudgetProperties properties = new QueryBudgetProperties();
+        properties.setMode(mode);
+        properties.setRepeatThreshold(5);
+        return new JdbcStatementsFilter(registry, properties);
+    }
+
+    private static FilterChain chainRunning(int statements, String sql) {
+        return (request, response) -> {
+            for (int i = 0; i < statements; i++) {
+                JdbcStatementCounter.record(sql);
+            }
+        };
+    }
+
+    private static void run(JdbcStatementsFilter filter, String handlerMethod, FilterChain chain)
+            throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films");
+        try {
+            request.setAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE,
+                    new HandlerMethod(new Handlers(), Handlers.class.getMethod(handlerMethod)));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(e);
+        }
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+    }
+
+    public static class Handlers {
+        @QueryBudget(2)
+        public void budgeted() {
+        }
+
+        public void unbudgeted() {
+        }
+
+        @QueryBudget(QueryBudget.UNLIMITED)
+        public void unlimited() {
+        }
+    }
+}
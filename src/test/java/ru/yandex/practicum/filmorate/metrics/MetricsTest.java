@@ -0,0 +1,152 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class MetricsTest {
+    private final MockMvc mockMvc;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final FilmService filmService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void afterTest() {
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("DELETE FROM film");
+    }
+
+    @Test
+    void prometheusEndpointReportsStorageRequestAndStatementMetrics() throws Exception {
+        mockMvc.perform(get("/users")).andExpect(status().isOk());
+        mockMvc.perform(get("/films/-1")).andExpect(status().isNotFound());
+
+        String metrics = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertHasLine(metrics, "filmorate_storage_seconds_count{", "method=\"findAll\"", "storage=\"UserDbStorage\"",
+                "exception=\"none\"");
+        assertHasLine(metrics, "filmorate_storage_seconds{", "method=\"findAll\"", "quantile=\"0.99\"");
+        assertHasLine(metrics, "filmorate_storage_seconds_count{", "method=\"getVersion\"", "storage=\"FilmDbStorage\"",
+                "exception=\"FilmNotFoundException\"");
+        assertHasLine(metrics, "http_server_requests_seconds_count{", "uri=\"/films/{id}\"", "status=\"404\"");
+        assertHasLine(metrics, "filmorate_jdbc_statements_count{", "uri=\"/users\"");
+        assertHasLine(metrics, "filmorate_jdbc_statements_sum{", "uri=\"/users\"");
+    }
+
+    // в тестах filmorate.query-budget.mode=fail: эндпоинт сверх своего @QueryBudget бросает исключение
+    @Test
+    void budgetedEndpointsStayWithinQueryBudget() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(userStorage.create(User.builder()
+                    .login("login" + i)
+                    .email("mail" + i + "@ya.ru")
+                    .name("name" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()));
+        }
+        for (int i = 2; i < users.size(); i++) {
+            userStorage.addFriend(users.get(0).getId(), users.get(i).getId());
+            userStorage.addFriend(users.get(1).getId(), users.get(i).getId());
+        }
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Film film = filmStorage.create(Film.builder()
+                    .name("film" + i)
+                    .description("description")
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(100)
+                    .mpa(new Mpa(1, null))
+                    .genres(Set.of(new Genre(1 + i % 6, null), new Genre(1 + (i + 1) % 6, null)))
+                    .build());
+            films.add(film);
+            for (User user : users.subList(0, 1 + i % users.size())) {
+                filmStorage.likeFilm(film, user);
+            }
+        }
+        filmService.rebuildLeaderboard();
+        int filmId = films.get(0).getId();
+        int userId = users.get(0).getId();
+
+        for (String url : List.of("/films/" + filmId, "/films", "/films?limit=10", "/films/popular?count=10",
+                "/users/" + userId, "/users", "/users?limit=10", "/users/" + userId + "/friends",
+                "/users/" + userId + "/friends/common/" + users.get(1).getId())) {
+            mockMvc.perform(get(url)).andExpect(status().isOk());
+        }
+    }
+
+    // больше одной порции IN: каждая следующая порция расширяет бюджет, а не считается лишним запросом
+    @Test
+    void endpointsOverOneInChunkStayWithinQueryBudget() throws Exception {
+        int rows = 600;
+        List<User> users = new ArrayList<>();
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            users.add(User.builder()
+                    .login("login" + i)
+                    .email("mail" + i + "@ya.ru")
+                    .name("name" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build());
+            films.add(Film.builder()
+                    .name("film" + i)
+                    .description("description")
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(100)
+                    .mpa(new Mpa(1, null))
+                    .genres(Set.of(new Genre(1 + i % 6, null)))
+                    .build());
+        }
+        userStorage.createAll(users);
+        filmStorage.createAll(films);
+        List<int[]> likes = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            likes.add(new int[]{films.get(i).getId(), users.get(i).getId()});
+        }
+        filmStorage.addLikes(likes);
+        filmService.rebuildLeaderboard();
+
+        for (String url : List.of("/films", "/films?limit=" + rows, "/films/popular?count=" + rows,
+                "/users", "/users?limit=" + rows)) {
+            mockMvc.perform(get(url)).andExpect(status().isOk());
+        }
+    }
+
+    private static void assertHasLine(String metrics, String prefix, String... parts) {
+        assertTrue(Arrays.stream(metrics.split("\n"))
+                        .anyMatch(line -> line.startsWith(prefix) && Arrays.stream(parts).allMatch(line::contains)),
+                () -> "Нет строки " + prefix + " с " + Arrays.toString(parts) + " в\n" + metrics);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntSetTest {
+    @Test
+    void keepsSortedUniqueValues() {
+        IntSet set = new IntSet();
+        assertTrue(set.add(5));
+        assertTrue(set.add(1));
+        assertTrue(set.add(9));
+        assertFalse(set.add(5));
+
+        assertEquals(3, set.size());
+        assertArrayEquals(new int[]{1, 5, 9}, set.toIntArray());
+        assertTrue(set.contains(9));
+        assertFalse(set.contains(2));
+        assertFalse(set.contains("9"));
+        assertEquals(Set.of(1, 5, 9), set);
+        assertEquals(Set.of(1, 5, 9).hashCode(), set.hashCode());
+    }
+
+    @Test
+    void removeThroughSetAndIterator() {
+        IntSet set = new IntSet(List.of(4, 2, 8, 2, 6));
+        assertArrayEquals(new int[]{2, 4, 6, 8}, set.toIntArray());
+
+        assertTrue(set.remove(4));
+        assertFalse(set.remove(4));
+        Iterator<Integer> iterator = set.iterator();
+        iterator.next();
+        iterator.remove();
+        assertArrayEquals(new int[]{6, 8}, set.toIntArray());
+
+        set.removeIf(id -> id > 6);
+        assertEquals(Set.of(6), set);
+    }
+
+    @Test
+    void withAndWithoutReturnCopies() {
+        IntSet set = IntSet.of(1, 3);
+
+        IntSet added = set.with(2);
+        IntSet removed = set.without(1);
+
+        assertArrayEquals(new int[]{1, 3}, set.toIntArray());
+        assertArrayEquals(new int[]{1, 2, 3}, added.toIntArray());
+        assertArrayEquals(new int[]{3}, removed.toIntArray());
+    }
+
+    @Test
+    void keepsJsonShapeOfSet() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        Film film = Film.builder().name("name").likes(IntSet.of(3, 1, 2)).build();
+
+        String json = mapper.writeValueAsString(film);
+        assertTrue(json.contains("\"likes\":[1,2,3]"));
+        assertEquals(Set.of(1, 2, 3), mapper.readValue("[3,1,2]", IntSet.class));
+    }
+
+    @Test
+    void toStringIsBounded() {
+        assertEquals("[1, 2, 3]", IntSet.of(3, 1, 2).toString());
+
+        IntSet large = new IntSet();
+        for (int i = 1; i <= 5000; i++) {
+            large.addInt(i);
+        }
+        assertEquals("[1, 2, 3, 4, 5, 6, 7, 8, 9, 10, ... всего 5000]", large.toString());
+    }
+}
@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.impl.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.impl.InMemoryUserStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkImportServiceTest {
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage();
+    private final FilmService filmService = new FilmService(filmStorage, userStorage);
+    private final BulkImportService service = new BulkImportService(filmStorage, userStorage,
+            filmService, TransactionOperations.withoutTransaction(),
+            new ObjectMapper().findAndRegisterModules());
+
+    @Test
+    void importsFilmsFromCsvAndReportsInvalidRows() throws IOException {
+        String csv = "name,releaseDate,description,duration,rate,mpa,genres\n" +
+                "Первый,2000-01-01,\"Описание, с запятой\",100,4,1,1;2\n" +
+                ",2000-01-01,Без названия,100,4,1,\n" +
+                "Третий,1800-01-01,Слишком рано,100,4,1,\n" +
+                "Четвертый,2000-01-01,Нет рейтинга,100,4,99,\n" +
+                "Пятый,2000-01-01,Лишняя колонка,100,4,1,,\n";
+
+        BulkImportResult result = service.importFilms(stream(csv), BulkImportService.Format.CSV);
+
+        assertEquals(5, result.getRowsTotal());
+        assertEquals(1, result.getRowsImported());
+        assertEquals(4, result.getRowsFailed());
+        assertEquals(List.of(3, 4, 5, 6), result.getErrors().stream()
+                .map(BulkImportResult.RowError::getLine)
+                .sorted()
+                .collect(Collectors.toList()));
+        Film film = filmStorage.findAll().get(0);
+        assertEquals("Описание, с запятой", film.getDescription());
+        assertEquals(2, film.getGenres().size());
+    }
+
+    @Test
+    void importsUsersLikesAndFriendshipsFromNdjsonAcrossChunks() throws IOException {
+        int users = BulkImportService.CHUNK_SIZE + 10;
+        String usersNdjson = IntStream.rangeClosed(1, users)
+                .mapToObj(i -> "{\"email\":\"user" + i + "@ya.ru\",\"login\":\"user" + i + "\",\"birthday\":\"1990-01-01\"}")
+                .collect(Collectors.joining("\n"));
+        service.importFilms(stream("{\"name\":\"Фильм\",\"releaseDate\":\"2000-01-01\",\"description\":\"\"," +
+                "\"duration\":90,\"mpa\":{\"id\":1}}"), BulkImportService.Format.NDJSON);
+
+        BulkImportResult userResult = service.importUsers(stream(usersNdjson), BulkImportService.Format.NDJSON);
+        BulkImportResult likeResult = service.importLikes(stream("{\"filmId\":1,\"userId\":1}\n" +
+                "{\"filmId\":1,\"userId\":2}\n{\"filmId\":2,\"userId\":1}\nне json"), BulkImportService.Format.NDJSON);
+        BulkImportResult friendResult = service.importFriendships(stream("userId,friendId\n1,2\n1,1\n1,x"),
+                BulkImportService.Format.CSV);
+
+        assertEquals(users, userResult.getRowsImported());
+        assertEquals("user1", userStorage.get(1).getName());
+        assertEquals(2, likeResult.getRowsImported());
+        assertEquals(2, likeResult.getRowsFailed());
+        assertEquals(2, filmStorage.get(1).getLikes().size());
+        assertEquals(1, friendResult.getRowsImported());
+        assertEquals(2, friendResult.getRowsFailed());
+        assertTrue(userStorage.get(1).getFriends().containsInt(2));
+    }
+
+    @Test
+    void importUpdatesLeaderboardAndCountsOnlyInsertedLikes() throws IOException {
+        filmService.rebuildLeaderboard();
+        String films = IntStream.rangeClosed(1, 3)
+                .mapToObj(i -> "{\"name\":\"Фильм " + i + "\",\"releaseDate\":\"2000-01-01\",\"description\":\"\"," +
+                        "\"duration\":90,\"mpa\":{\"id\":1}}")
+                .collect(Collectors.joining("\n"));
+        service.importFilms(stream(films), BulkImportService.Format.NDJSON);
+        service.importUsers(stream("email,login,name,birthday\na@ya.ru,a,,1990-01-01\nb@ya.ru,b,,1990-01-01"),
+                BulkImportService.Format.CSV);
+        assertEquals(List.of(1, 2, 3), ids(filmService.getPopularFilms(3)));
+
+        BulkImportResult first = service.importLikes(stream("filmId,userId\n3,1\n3,2\n2,1"),
+                BulkImportService.Format.CSV);
+        assertEquals(List.of(3, 2, 1), ids(filmService.getPopularFilms(3)));
+        BulkImportResult repeated = service.importLikes(stream("filmId,userId\n3,1\n2,2"),
+                BulkImportService.Format.CSV);
+
+        assertEquals(3, first.getRowsImported());
+        assertEquals(1, repeated.getRowsImported());
+        assertEquals(0, repeated.getRowsFailed());
+        assertEquals(List.of(2, 3, 1), ids(filmService.getPopularFilms(3)));
+        assertEquals(2, filmStorage.get(2).getLikes().size());
+    }
+
+    @Test
+    void parsesQuotedCsvValues() {
+        assertEquals(List.of("a", "b, c", "d \"e\"", ""), BulkImportService.parseCsvLine("a,\"b, c\",\"d \"\"e\"\"\","));
+    }
+
+    private static List<Integer> ids(List<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
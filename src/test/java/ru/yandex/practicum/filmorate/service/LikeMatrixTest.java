@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikeMatrixTest {
+    private final LikeMatrix matrix = new LikeMatrix();
+
+    @BeforeEach
+    void setUp() {
+        int[][] likes = {{1, 1}, {1, 2}, {1, 3}, {2, 1}, {2, 2}, {2, 4}, {3, 1}, {3, 5}, {4, 6}};
+        matrix.rebuild(consumer -> {
+            for (int[] like : likes) {
+                consumer.accept(like[1], like[0]);
+            }
+        });
+    }
+
+    @Test
+    void recommendsFilmsOfUsersWithOverlappingLikes() {
+        assertTrue(matrix.isReady());
+        assertArrayEquals(new int[]{1, 2, 3}, matrix.films(1));
+        assertArrayEquals(new int[]{4, 5}, matrix.recommend(1, 10));
+        assertArrayEquals(new int[]{4}, matrix.recommend(1, 1));
+        assertArrayEquals(new int[0], matrix.recommend(4, 10));
+        assertArrayEquals(new int[0], matrix.recommend(42, 10));
+    }
+
+    @Test
+    void likeAndDislikeUpdateRecommendations() {
+        matrix.like(1, 4);
+        matrix.like(1, 4);
+        assertArrayEquals(new int[]{1, 2, 3, 4}, matrix.films(1));
+        assertArrayEquals(new int[]{5}, matrix.recommend(1, 10));
+
+        matrix.dislike(3, 5);
+        assertArrayEquals(new int[0], matrix.recommend(1, 10));
+
+        matrix.dislike(1, 4);
+        assertArrayEquals(new int[]{4}, matrix.recommend(1, 10));
+    }
+
+    @Test
+    void removeFilmDropsItFromRecommendations() {
+        matrix.removeFilm(4);
+        assertArrayEquals(new int[]{5}, matrix.recommend(1, 10));
+        assertArrayEquals(new int[]{1, 2}, matrix.films(2));
+    }
+
+    @Test
+    void removeUserDropsItsLikes() {
+        matrix.removeUser(3);
+        assertArrayEquals(new int[]{4}, matrix.recommend(1, 10));
+        assertArrayEquals(new int[0], matrix.films(3));
+
+        matrix.removeUser(42);
+        assertEquals(3, matrix.size());
+    }
+
+    @Test
+    void rebuildKeepsLikesMadeWhileLikesLoad() {
+        matrix.rebuild(consumer -> {
+            consumer.accept(1, 1);
+            consumer.accept(2, 1);
+            matrix.like(1, 4);
+            matrix.dislike(1, 2);
+            assertArrayEquals(new int[]{1, 3, 4}, matrix.films(1));
+        });
+
+        assertArrayEquals(new int[]{1, 4}, matrix.films(1));
+        assertArrayEquals(new int[0], matrix.films(2));
+        assertEquals(1, matrix.size());
+    }
+}
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikeWriteBufferTest {
+    private final List<LikeWriteBuffer.Batch> batches = new CopyOnWriteArrayList<>();
+
+    @Test
+    void likeThenDislikeCollapsesIntoSingleDislike() throws IOException {
+        try (LikeWriteBuffer buffer = new LikeWriteBuffer(1000, 60_000, null, batches::add)) {
+            buffer.like(1, 10);
+            buffer.like(1, 11);
+            buffer.dislike(1, 10);
+            buffer.like(2, 10);
+            buffer.like(2, 10);
+            assertEquals(3, buffer.size());
+
+            buffer.flushNow();
+
+            assertEquals(1, batches.size());
+            assertEquals(List.of("1:11", "2:10"), pairs(batches.get(0).getLikes()));
+            assertEquals(List.of("1:10"), pairs(batches.get(0).getDislikes()));
+            assertEquals(0, buffer.size());
+        }
+    }
+
+    @Test
+    void flushesWhenBatchIsFull() throws Exception {
+        try (LikeWriteBuffer buffer = new LikeWriteBuffer(10, 60_000, null, batches::add)) {
+            for (int userId = 0; userId < 10; userId++) {
+                buffer.like(1, userId);
+            }
+
+            waitFor(() -> !batches.isEmpty());
+            assertEquals(10, batches.get(0).getLikes().size());
+        }
+    }
+
+    @Test
+    void flushesWithinMaxStaleness() throws Exception {
+        try (LikeWriteBuffer buffer = new LikeWriteBuffer(1000, 100, null, batches::add)) {
+            long start = System.nanoTime();
+            buffer.like(1, 1);
+
+            waitFor(() -> !batches.isEmpty());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    @Test
+    void failedBatchIsRetriedWithoutOverwritingNewerEvents() throws Exception {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        try (LikeWriteBuffer buffer = new LikeWriteBuffer(1000, 60_000, null, batch -> {
+            if (fail.getAndSet(false)) {
+                throw new IllegalStateException("база недоступна");
+            }
+            batches.add(batch);
+        })) {
+            buffer.like(1, 1);
+            buffer.like(1, 2);
+            buffer.flushNow();
+            assertEquals(2, buffer.size());
+
+            buffer.dislike(1, 2);
+            buffer.flushNow();
+
+            assertEquals(List.of("1:1"), pairs(batches.get(0).getLikes()));
+            assertEquals(List.of("1:2"), pairs(batches.get(0).getDislikes()));
+        }
+    }
+
+    @Test
+    void journalRestoresEventsNotWrittenBeforeCrash(@TempDir Path dir) throws Exception {
+        Path journalPath = dir.resolve("likes.journal");
+        LikeWriteBuffer crashed = new LikeWriteBuffer(1000, 60_000, new LikeJournal(journalPath, true), batch -> {
+            throw new IllegalStateException("процесс упал до записи");
+        });
+        crashed.like(1, 1);
+        crashed.like(1, 2);
+        crashed.dislike(1, 2);
+        crashed.like(3, 1);
+        // недописанная строка при падении процесса
+        Files.writeString(journalPath, Files.readString(journalPath) + "L 5 ");
+
+        try (LikeWriteBuffer restarted = new LikeWriteBuffer(1000, 60_000, new LikeJournal(journalPath, true),
+                batches::add)) {
+            assertEquals(3, restarted.size());
+            restarted.flushNow();
+        }
+
+        assertEquals(List.of("1:1", "3:1"), pairs(batches.get(0).getLikes()));
+        assertEquals(List.of("1:2"), pairs(batches.get(0).getDislikes()));
+        assertEquals("", Files.readString(journalPath));
+    }
+
+    private static List<String> pairs(List<int[]> likes) {
+        return likes.stream()
+                .map(like -> like[0] + ":" + like[1])
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,155 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PopularityLeaderboardTest {
+    private final PopularityLeaderboard leaderboard = new PopularityLeaderboard();
+
+    @Test
+    void topOrdersByLikesThenById() {
+        leaderboard.rebuild(Map.of(1, 5, 2, 7, 3, 5, 4, 0));
+
+        assertTrue(leaderboard.isReady());
+        assertEquals(List.of(2, 1, 3, 4), leaderboard.top(10));
+        assertEquals(List.of(2, 1), leaderboard.top(2));
+    }
+
+    @Test
+    void incrementAndDecrementMoveFilm() {
+        leaderboard.rebuild(Map.of(1, 1, 2, 1));
+        leaderboard.add(3);
+
+        leaderboard.increment(2);
+        assertEquals(List.of(2, 1, 3), leaderboard.top(3));
+
+        leaderboard.decrement(2);
+        leaderboard.decrement(2);
+        leaderboard.decrement(2);
+        assertEquals(0, leaderboard.getLikeCount(2));
+        assertEquals(List.of(1, 2, 3), leaderboard.top(3));
+
+        leaderboard.remove(1);
+        assertEquals(List.of(2, 3), leaderboard.top(3));
+    }
+
+    @Test
+    void concurrentLikesKeepExactCounts() throws InterruptedException {
+        leaderboard.rebuild(Map.of(1, 0, 2, 0, 3, 0));
+        int threads = 8;
+        int likesPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < likesPerThread; i++) {
+                    leaderboard.increment(1);
+                    leaderboard.increment(2);
+                    leaderboard.decrement(2);
+                    leaderboard.top(3);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(threads * likesPerThread, leaderboard.getLikeCount(1));
+        assertEquals(0, leaderboard.getLikeCount(2));
+        assertEquals(List.of(1, 2, 3), leaderboard.top(3));
+    }
+
+    // лайк уже в базе и в снимке, но до рейтинга доходит только после подмены - учитывается один раз
+    @Test
+    void rebuildTakesStoredCountsForFilmsChangedDuringRebuild() {
+        leaderboard.rebuild(Map.of(1, 4, 2, 3));
+        Map<Integer, Integer> stored = Map.of(1, 5, 2, 3);
+        AtomicBoolean pendingLike = new AtomicBoolean(true);
+
+        leaderboard.rebuild(() -> {
+            leaderboard.increment(2);
+            leaderboard.decrement(2);
+            return stored;
+        }, filmIds -> {
+            if (pendingLike.getAndSet(false)) {
+                leaderboard.increment(1);
+            }
+            return stored;
+        });
+
+        assertEquals(5, leaderboard.getLikeCount(1));
+        assertEquals(3, leaderboard.getLikeCount(2));
+        assertEquals(List.of(1, 2), leaderboard.top(2));
+    }
+
+    @Test
+    void rebuildKeepsTopCompleteAndConcurrentLikes() throws Exception {
+        int films = 1_000;
+        Map<Integer, Integer> counts = new ConcurrentHashMap<>();
+        for (int id = 1; id <= films; id++) {
+            counts.put(id, id % 7);
+        }
+        leaderboard.rebuild(counts);
+        int likes = 20_000;
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CountDownLatch start = new CountDownLatch(1);
+        // лайк попадает в "базу" и в рейтинг до того, как его увидит снимок счетчиков
+        Future<?> liker = executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < likes; i++) {
+                synchronized (counts) {
+                    counts.merge(1, 1, Integer::sum);
+                    leaderboard.increment(1);
+                }
+            }
+            return null;
+        });
+        Future<?> rebuilder = executor.submit(() -> {
+            start.await();
+            while (running.get()) {
+                leaderboard.rebuild(() -> {
+                    synchronized (counts) {
+                        return new HashMap<>(counts);
+                    }
+                }, filmIds -> {
+                    synchronized (counts) {
+                        return new HashMap<>(counts);
+                    }
+                });
+            }
+            return null;
+        });
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            while (running.get()) {
+                assertEquals(100, leaderboard.top(100).size());
+                assertEquals(films, leaderboard.size());
+            }
+            return null;
+        });
+        start.countDown();
+        liker.get(1, TimeUnit.MINUTES);
+        running.set(false);
+        rebuilder.get(1, TimeUnit.MINUTES);
+        reader.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+
+        assertEquals(1 % 7 + likes, leaderboard.getLikeCount(1));
+        assertEquals(1, leaderboard.top(1).get(0));
+    }
+}
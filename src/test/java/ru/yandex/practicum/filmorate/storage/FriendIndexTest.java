@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FriendIndexTest {
+    private final FriendIndex index = new FriendIndex();
+
+    @Test
+    void commonFriendsIsIntersectionOfBitmaps() {
+        index.rebuild(Map.of(
+                1, RoaringBitmap.bitmapOf(2, 3, 4, 100_000),
+                2, RoaringBitmap.bitmapOf(3, 4, 5, 100_000)));
+
+        assertTrue(index.isReady());
+        assertArrayEquals(new int[]{3, 4, 100_000}, index.common(1, 2));
+        assertArrayEquals(new int[0], index.common(1, 42));
+        assertTrue(index.getSizeInBytes() > 0);
+    }
+
+    @Test
+    void addAndRemoveKeepIndexCurrent() {
+        index.rebuild(Map.of());
+        index.add(1, 3);
+        index.add(2, 3);
+        index.add(2, 3);
+        assertArrayEquals(new int[]{3}, index.common(1, 2));
+
+        int[] before = index.friends(1);
+        index.remove(1, 3);
+        assertArrayEquals(new int[]{3}, before);
+        assertArrayEquals(new int[0], index.common(1, 2));
+        assertFalse(index.contains(1, 3));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void removeUserDropsItFromOtherBitmaps() {
+        index.rebuild(Map.of(
+                1, RoaringBitmap.bitmapOf(2, 3),
+                2, RoaringBitmap.bitmapOf(1, 3),
+                3, RoaringBitmap.bitmapOf(1)));
+
+        index.removeUser(3);
+
+        assertArrayEquals(new int[]{2}, index.friends(1));
+        assertArrayEquals(new int[]{1}, index.friends(2));
+        assertArrayEquals(new int[0], index.friends(3));
+    }
+
+    @Test
+    void suggestionsRankNonFriendsByMutualFriends() {
+        index.rebuild(Map.of(
+                1, RoaringBitmap.bitmapOf(2, 3, 4),
+                2, RoaringBitmap.bitmapOf(1, 5, 6),
+                3, RoaringBitmap.bitmapOf(4, 6, 7),
+                4, RoaringBitmap.bitmapOf(6, 7)));
+
+        assertArrayEquals(new int[]{6, 7, 5}, index.suggestions(1, 10));
+        assertArrayEquals(new int[]{6, 7}, index.suggestions(1, 2));
+        assertArrayEquals(new int[0], index.suggestions(42, 10));
+    }
+
+    @Test
+    void rebuildKeepsChangesMadeWhileSnapshotLoads() {
+        index.rebuild(Map.of(1, RoaringBitmap.bitmapOf(2, 3)));
+
+        index.rebuild(() -> {
+            index.add(1, 4);
+            index.remove(1, 2);
+            assertArrayEquals(new int[]{3, 4}, index.friends(1));
+            return Map.of(1, RoaringBitmap.bitmapOf(2, 3), 5, RoaringBitmap.bitmapOf(1));
+        });
+
+        assertArrayEquals(new int[]{3, 4}, index.friends(1));
+        assertArrayEquals(new int[]{1}, index.friends(5));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void parallelSuggestionsMatchSequentialCounting() {
+        Map<Integer, RoaringBitmap> friends = new HashMap<>();
+        RoaringBitmap hub = new RoaringBitmap();
+        hub.add(2L, 2_002L);
+        friends.put(1, hub);
+        for (int friend = 2; friend < 2_002; friend++) {
+            friends.put(friend, RoaringBitmap.bitmapOf(10_000 + friend % 7, 20_000 + friend % 3));
+        }
+        index.rebuild(friends);
+
+        assertArrayEquals(new int[]{20_000, 20_002, 20_001, 10_002, 10_003, 10_004, 10_005, 10_006, 10_000, 10_001},
+                index.suggestions(1, 10));
+    }
+}
@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryStorageConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int USERS_PER_THREAD = 500;
+
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage();
+
+    @Test
+    void concurrentCreatesLikesAndFriendshipsAreNotLost() throws InterruptedException {
+        Film film = filmStorage.create(film());
+        User hub = userStorage.create(user("hub"));
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < USERS_PER_THREAD; i++) {
+                    User user = userStorage.create(user("user" + thread + "_" + i));
+                    ids.add(user.getId());
+                    filmStorage.likeFilm(film, user);
+                    userStorage.addFriend(user.getId(), hub.getId());
+                    filmStorage.getPopularFilms(1);
+                    userStorage.getUserFriends(hub.getId());
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        int created = THREADS * USERS_PER_THREAD;
+        assertEquals(created, ids.size());
+        assertEquals(created, filmStorage.get(film.getId()).getLikes().size());
+        assertEquals(created, userStorage.get(hub.getId()).getFriends().size());
+        for (Integer id : ids) {
+            assertEquals(Set.of(hub.getId()), userStorage.get(id).getFriends());
+        }
+    }
+
+    @Test
+    void updateKeepsLikesAndFriends() {
+        Film film = filmStorage.create(film());
+        User user = userStorage.create(user("login"));
+        User friend = userStorage.create(user("friend"));
+        filmStorage.likeFilm(film, user);
+        userStorage.addFriend(user.getId(), friend.getId());
+
+        Film changed = film();
+        changed.setId(film.getId());
+        changed.setName("changed");
+        assertEquals(Set.of(user.getId()), filmStorage.update(changed).getLikes());
+
+        User changedUser = user("changed");
+        changedUser.setId(user.getId());
+        assertEquals(Set.of(friend.getId()), userStorage.update(changedUser).getFriends());
+
+        userStorage.delete(friend);
+        assertTrue(userStorage.get(user.getId()).getFriends().isEmpty());
+    }
+
+    @Test
+    void genresAndMpaComeFromReferenceData() {
+        assertEquals(6, filmStorage.findAllGenres().size());
+        assertEquals("Комедия", filmStorage.getGenre(1).getName());
+        assertEquals("PG-13", filmStorage.getMpa(3).getName());
+
+        Film film = film();
+        film.setMpa(Mpa.builder().id(3).build());
+        film.setGenres(Set.of(Genre.builder().id(2).build(), Genre.builder().id(1).build(),
+                Genre.builder().id(999).build()));
+        Film created = filmStorage.create(film);
+
+        assertEquals("PG-13", created.getMpa().getName());
+        assertEquals(List.of("Комедия", "Драма"),
+                created.getGenres().stream().map(Genre::getName).collect(Collectors.toList()));
+    }
+
+    private static Film film() {
+        return Film.builder()
+                .name("name")
+                .description("description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2000, 12, 28))
+                .build();
+    }
+
+    private static User user(String login) {
+        return User.builder()
+                .email(login + "@ya.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build();
+    }
+}
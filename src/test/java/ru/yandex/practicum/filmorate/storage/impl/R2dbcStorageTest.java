@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// реактивное чтение должно отдавать то же, что блокирующие хранилища; обе стороны смотрят в одну базу в памяти
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:r2dbc-test;DB_CLOSE_DELAY=-1",
+        "filmorate.reactive.url=r2dbc:h2:mem:///r2dbc-test?options=DB_CLOSE_DELAY=-1"
+})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class R2dbcStorageTest {
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final FilmR2dbcStorage reactiveFilmStorage;
+    private final UserR2dbcStorage reactiveUserStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void afterTest() {
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("DELETE FROM film");
+    }
+
+    @Test
+    void getFilmMatchesJdbcStorage() {
+        Film film = filmStorage.create(film("film", Set.of(new Genre(1, null), new Genre(2, null))));
+        User user = userStorage.create(user("user"));
+        filmStorage.likeFilm(film, user);
+
+        assertEquals(filmStorage.get(film.getId()), reactiveFilmStorage.get(film.getId()).block());
+    }
+
+    @Test
+    void getMissingFilmFailsWithNotFound() {
+        assertThrows(FilmNotFoundException.class, () -> reactiveFilmStorage.get(-1).block());
+    }
+
+    @Test
+    void findAllFilmsStreamsEveryChunkInIdOrder() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 1100; i++) {
+            films.add(film("film" + i, Set.of(new Genre(1 + i % 6, null))));
+        }
+        filmStorage.createAll(films);
+
+        List<Film> streamed = reactiveFilmStorage.findAll().collectList().block();
+
+        assertEquals(films.stream().map(Film::getId).collect(Collectors.toList()),
+                streamed.stream().map(Film::getId).collect(Collectors.toList()));
+        assertEquals(filmStorage.get(films.get(1099).getId()), streamed.get(1099));
+    }
+
+    @Test
+    void popularFilmsAreOrderedByLikes() {
+        Film first = filmStorage.create(film("first", Set.of()));
+        Film second = filmStorage.create(film("second", Set.of()));
+        User user = userStorage.create(user("user"));
+        User other = userStorage.create(user("other"));
+        filmStorage.likeFilm(second, user);
+        filmStorage.likeFilm(second, other);
+        filmStorage.likeFilm(first, user);
+
+        List<Integer> popular = reactiveFilmStorage.getPopularFilms(10).map(Film::getId).collectList().block();
+
+        assertEquals(List.of(second.getId(), first.getId()), popular);
+    }
+
+    @Test
+    void usersAndFriendsMatchJdbcStorage() {
+        User user = userStorage.create(user("user"));
+        User other = userStorage.create(user("other"));
+        User common = userStorage.create(user("common"));
+        userStorage.addFriend(user.getId(), common.getId());
+        userStorage.addFriend(other.getId(), common.getId());
+        userStorage.addFriend(user.getId(), other.getId());
+
+        assertEquals(userStorage.get(user.getId()), reactiveUserStorage.get(user.getId()).block());
+        assertEquals(userStorage.findAll().size(), reactiveUserStorage.findAll().count().block());
+        assertEquals(userStorage.getUserFriends(user.getId()).stream()
+                        .sorted(Comparator.comparingInt(User::getId)).collect(Collectors.toList()),
+                reactiveUserStorage.getUserFriends(user.getId()).sort(Comparator.comparingInt(User::getId))
+                        .collectList().block());
+        assertEquals(List.of(common.getId()), reactiveUserStorage.getCommonFriends(user.getId(), other.getId())
+                .map(User::getId).collectList().block());
+        assertThrows(UserNotFoundException.class, () -> reactiveUserStorage.get(-1).block());
+    }
+
+    private static Film film(String name, Set<Genre> genres) {
+        return Film.builder()
+                .name(name)
+                .description("description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, null))
+                .genres(genres)
+                .build();
+    }
+
+    private static User user(String login) {
+        return User.builder()
+                .login(login)
+                .email(login + "@ya.ru")
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}